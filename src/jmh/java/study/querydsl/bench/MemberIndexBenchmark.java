@@ -0,0 +1,93 @@
+package study.querydsl.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.seed.MemberDataSeeder;
+import study.querydsl.seed.MemberSeedSpec;
+
+import java.util.List;
+
+/**
+ * 검색 인덱스 전/후 비교. indexed=false 면 시드 후 인덱스를 지워서 풀스캔 비용을 잰다.
+ * ./gradlew jmh -PjmhInclude=MemberIndexBenchmark (10M 은 시드에만 몇 분 걸린다)
+ */
+@State(Scope.Benchmark)
+public class MemberIndexBenchmark {
+
+    private static final int TEAM_COUNT = 500;
+    private static final String[] INDEXES = {"idx_member_username", "idx_member_team_age", "idx_member_age", "idx_team_name"};
+
+    @Param({"10000000"})
+    public long members;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+
+    private MemberSearchCondition usernameCondition;
+    private MemberSearchCondition teamNameCondition;
+    private MemberSearchCondition ageCondition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("index" + members + indexed);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        MemberSeedSpec spec = new MemberSeedSpec();
+        spec.setMemberCount(members);
+        spec.setTeamCount(TEAM_COUNT);
+        spec.setDataset(MemberSeedSpec.Dataset.RANDOM);
+        context.getBean(MemberDataSeeder.class).seed(spec);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        if (!indexed) {
+            for (String index : INDEXES) {
+                jdbcTemplate.execute("drop index if exists " + index);
+            }
+        }
+        jdbcTemplate.execute("analyze");
+
+        usernameCondition = new MemberSearchCondition();
+        usernameCondition.setUsername("member" + (members / 2));
+
+        teamNameCondition = new MemberSearchCondition();
+        teamNameCondition.setTeamName("team7");
+        teamNameCondition.setAgeGoe(30);
+        teamNameCondition.setAgeLoe(30);
+
+        ageCondition = new MemberSearchCondition();
+        ageCondition.setAgeGoe(30);
+        ageCondition.setAgeLoe(30);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> usernameEq() {
+        return memberJpaRepository.search(usernameCondition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> teamNameEqAndAge() {
+        return memberJpaRepository.search(teamNameCondition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> ageRange() {
+        return memberJpaRepository.search(ageCondition);
+    }
+}
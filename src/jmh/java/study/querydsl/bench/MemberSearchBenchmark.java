@@ -0,0 +1,93 @@
+package study.querydsl.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.seed.MemberDataSeeder;
+import study.querydsl.seed.MemberSeedSpec;
+
+import java.util.List;
+
+/**
+ * 검색 경로 비교 기준선.
+ * ./gradlew jmh -PjmhInclude=MemberSearchBenchmark (gc 프로파일러로 할당량도 같이 측정)
+ */
+@State(Scope.Benchmark)
+public class MemberSearchBenchmark {
+
+    private static final int TEAM_COUNT = 100;
+
+    @Param({"10000", "100000"})
+    public int members;
+
+    @Param({"0", "100"})
+    public int page;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private MemberRepository memberRepository;
+
+    private MemberSearchCondition condition;
+    private PageRequest pageRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("search" + members);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        memberRepository = context.getBean(MemberRepository.class);
+        MemberSeedSpec spec = new MemberSeedSpec();
+        spec.setMemberCount(members);
+        spec.setTeamCount(TEAM_COUNT);
+        spec.setDataset(MemberSeedSpec.Dataset.RANDOM);
+        context.getBean(MemberDataSeeder.class).seed(spec);
+
+        condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+        pageRequest = PageRequest.of(page, 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> jpaRepositorySearchByBuilder() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> jpaRepositorySearch() {
+        return memberJpaRepository.search(condition);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageSimple() {
+        return memberRepository.searchPageSimple(condition, pageRequest);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPageComplex() {
+        return memberRepository.searchPageComplex(condition, pageRequest);
+    }
+
+    @Benchmark
+    public Page<Member> predicateExecutorFindAll() {
+        QMember member = QMember.member;
+        return memberRepository.findAll(member.age.between(condition.getAgeGoe(), condition.getAgeLoe()), pageRequest);
+    }
+}
@@ -3,44 +3,23 @@ package study.querydsl;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import study.querydsl.entity.Member;
-import study.querydsl.entity.Team;
+import study.querydsl.seed.MemberDataSeeder;
+import study.querydsl.seed.MemberSeedSpec;
 
 import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
 
 @Profile("local")
 @Component
 @RequiredArgsConstructor
 public class InitMember {
 
-    private final InitMemberService initMemberService;
+    private final MemberDataSeeder memberDataSeeder;
+    private final MemberSeedSpec memberSeedSpec;
 
-    // @PostConstruct 부분과 @Transactional 분리해서 호출 해야됨
+    // 트랜잭션은 MemberDataSeeder 안에서 commitSize 단위로 나눠서 건다. (member.seed.* 로 건수/분포 설정)
+    // 기본값은 예전 예제 데이터 그대로다. (teamA/teamB 에 member0~99 를 번갈아, age = 번호)
     @PostConstruct
     public void init() {
-        initMemberService.init();
-    }
-
-    @Component
-    static class InitMemberService {
-        @PersistenceContext
-        private EntityManager em;
-
-        @Transactional
-        public void init() {
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
-
-            em.persist(teamA);
-            em.persist(teamB);
-
-            for (int i = 0; i < 100; i++) {
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                em.persist(new Member("member" + i, i, selectedTeam));
-            }
-        }
+        memberDataSeeder.seed(memberSeedSpec);
     }
 }
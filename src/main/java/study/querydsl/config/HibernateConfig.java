@@ -0,0 +1,45 @@
+package study.querydsl.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.repository.TeamStatsMaintainer;
+import study.querydsl.support.EntityDmlTracker;
+import study.querydsl.support.QueryStatementInspector;
+import study.querydsl.support.UnflushedWriteListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class HibernateConfig {
+
+    // EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER
+    private static final String INTEGRATOR_PROVIDER = "hibernate.integrator_provider";
+
+    @Bean
+    public QueryStatementInspector queryStatementInspector(ApplicationEventPublisher eventPublisher) {
+        return new QueryStatementInspector(eventPublisher);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementTrackingCustomizer(
+            QueryStatementInspector queryStatementInspector,
+            @Value("${member.team-stats.table.enabled:false}") boolean teamStatsTable) {
+        List<Integrator> integrators = new ArrayList<>();
+        integrators.add(new EntityDmlTracker());
+        integrators.add(new UnflushedWriteListener());
+        if (teamStatsTable) {
+            integrators.add(new TeamStatsMaintainer());
+        }
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, queryStatementInspector);
+            properties.put(INTEGRATOR_PROVIDER, (IntegratorProvider) () -> integrators);
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import study.querydsl.datasource.ReplicaLagMonitor;
+import study.querydsl.datasource.ReplicaProperties;
+import study.querydsl.datasource.ReplicaRoutingDataSource;
+import study.querydsl.support.ConnectionWaitMetricsTrackerFactory;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * member.datasource.replicas 가 설정되어 있을 때만 켜진다.
+ * spring.datasource 는 primary, 읽기 전용 트랜잭션은 replica 로 라우팅한다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "member.datasource", name = "replicas[0].url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "member.datasource")
+    public ReplicaProperties replicaProperties() {
+        return new ReplicaProperties();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaLagMonitor replicaLagMonitor(DataSourceProperties dataSourceProperties, ReplicaProperties replicaProperties,
+                                               ObjectProvider<MeterRegistry> meterRegistry) {
+        // 빈이 아닌 풀이라 MetricsConfig 가 보지 못한다. 커넥션 대기 시간/hikaricp.* 메트릭을 여기서 붙인다.
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        MetricsTrackerFactory metrics = registry != null ? new MicrometerMetricsTrackerFactory(registry) : null;
+
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        ConnectionWaitMetricsTrackerFactory.install(primary, metrics);
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaProperties.getReplicas().size(); i++) {
+            ReplicaProperties.Replica replica = replicaProperties.getReplicas().get(i);
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("replica-" + i);
+            dataSource.setJdbcUrl(replica.getUrl());
+            dataSource.setUsername(replica.getUsername() != null ? replica.getUsername() : dataSourceProperties.getUsername());
+            dataSource.setPassword(replica.getPassword() != null ? replica.getPassword() : dataSourceProperties.getPassword());
+            dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+            dataSource.setReadOnly(true);
+            ConnectionWaitMetricsTrackerFactory.install(dataSource, metrics);
+            replicas.put(dataSource.getPoolName(), dataSource);
+        }
+
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(primary, replicas, replicaProperties.getMaxLag(), Clock.systemUTC());
+        monitor.start(replicaProperties.getLagCheckInterval());
+        return monitor;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaLagMonitor replicaLagMonitor) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(replicaLagMonitor));
+    }
+}
@@ -0,0 +1,55 @@
+package study.querydsl.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import study.querydsl.controller.MemberTeamDtoMessageConverter;
+import study.querydsl.support.AdaptiveConcurrencyLimiter;
+import study.querydsl.support.ConcurrencyLimitInterceptor;
+import study.querydsl.support.StatementBudgetGuard;
+import study.querydsl.support.StatementBudgetInterceptor;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final StatementBudgetGuard.Mode statementBudgetMode;
+    private final int defaultMaxStatements;
+    private final ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+
+    public WebConfig(@Value("${member.statement-budget.mode:OFF}") StatementBudgetGuard.Mode statementBudgetMode,
+                     @Value("${member.statement-budget.default-max:0}") int defaultMaxStatements,
+                     @Value("${member.search.concurrency-limit.enabled:true}") boolean concurrencyLimitEnabled,
+                     @Value("${member.search.concurrency-limit.initial:10}") int initialLimit,
+                     @Value("${member.search.concurrency-limit.min:2}") int minLimit,
+                     @Value("${member.search.concurrency-limit.max:100}") int maxLimit,
+                     MeterRegistry meterRegistry) {
+        this.statementBudgetMode = statementBudgetMode;
+        this.defaultMaxStatements = defaultMaxStatements;
+        this.concurrencyLimitInterceptor = concurrencyLimitEnabled
+                ? new ConcurrencyLimitInterceptor(new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit), meterRegistry)
+                : null;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 거절할 요청은 다른 인터셉터보다 먼저 걸러낸다
+        // export 는 응답을 다 쓸 때까지 수십 초씩 자리를 잡고, 그 지연이 한도 계산을 끌어내리므로 뺀다
+        if (concurrencyLimitInterceptor != null) {
+            registry.addInterceptor(concurrencyLimitInterceptor)
+                    .addPathPatterns("/v*/members", "/v*/members/**")
+                    .excludePathPatterns("/v*/members/export");
+        }
+        registry.addInterceptor(new StatementBudgetInterceptor(statementBudgetMode, defaultMaxStatements));
+    }
+
+    // JSON 뒤에 둬서 Accept 로 명시했을 때만 쓰이게 한다
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MemberTeamDtoMessageConverter());
+    }
+}
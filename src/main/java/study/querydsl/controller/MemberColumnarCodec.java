@@ -0,0 +1,139 @@
+package study.querydsl.controller;
+
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List&lt;MemberTeamDto&gt; 의 열(column) 단위 바이너리 인코딩. (application/x-member-columnar, big-endian)
+ * <pre>
+ * int    magic ('M','T','C','1')
+ * int    rowCount
+ * int    teamCount, teamCount x (long teamId, string teamName)   -- 팀 사전
+ * long[] memberId
+ * int[]  age
+ * int[]  team          -- 팀 사전 index, 팀이 없으면 -1
+ * string[] username
+ * string = int byteLength (null 이면 -1) + UTF-8 bytes
+ * </pre>
+ */
+public final class MemberColumnarCodec {
+
+    static final int MAGIC = 0x4D544331;
+
+    private MemberColumnarCodec() {
+    }
+
+    public static void encode(List<MemberTeamDto> rows, OutputStream outputStream) throws IOException {
+        // DataOutputStream 은 writeInt/writeLong 도 바이트 단위로 내보내므로 응답 스트림에 바로 쓰지 않는다
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(rows.size());
+
+        // 팀 id 기준 사전 (같은 이름의 다른 팀도 있으므로 id 로 구분)
+        Map<Long, Integer> teamIndex = new HashMap<>();
+        List<MemberTeamDto> teams = new ArrayList<>();
+        int[] teamRefs = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            MemberTeamDto row = rows.get(i);
+            if (row.getTeamId() == null) {
+                teamRefs[i] = -1;
+                continue;
+            }
+            Integer index = teamIndex.get(row.getTeamId());
+            if (index == null) {
+                index = teams.size();
+                teamIndex.put(row.getTeamId(), index);
+                teams.add(row);
+            }
+            teamRefs[i] = index;
+        }
+
+        out.writeInt(teams.size());
+        for (MemberTeamDto team : teams) {
+            out.writeLong(team.getTeamId());
+            writeString(out, team.getTeamName());
+        }
+        for (MemberTeamDto row : rows) {
+            out.writeLong(row.getMemberId());
+        }
+        for (MemberTeamDto row : rows) {
+            out.writeInt(row.getAge());
+        }
+        for (int teamRef : teamRefs) {
+            out.writeInt(teamRef);
+        }
+        for (MemberTeamDto row : rows) {
+            writeString(out, row.getUsername());
+        }
+        out.flush();
+    }
+
+    public static List<MemberTeamDto> decode(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a member columnar stream");
+        }
+        int rowCount = in.readInt();
+
+        int teamCount = in.readInt();
+        long[] teamIds = new long[teamCount];
+        String[] teamNames = new String[teamCount];
+        for (int i = 0; i < teamCount; i++) {
+            teamIds[i] = in.readLong();
+            teamNames[i] = readString(in);
+        }
+
+        long[] memberIds = new long[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            memberIds[i] = in.readLong();
+        }
+        int[] ages = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            ages[i] = in.readInt();
+        }
+        int[] teamRefs = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            teamRefs[i] = in.readInt();
+        }
+
+        List<MemberTeamDto> rows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            int team = teamRefs[i];
+            rows.add(new MemberTeamDto(memberIds[i], readString(in), ages[i],
+                    team < 0 ? null : teamIds[team],
+                    team < 0 ? null : teamNames[team]));
+        }
+        return rows;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
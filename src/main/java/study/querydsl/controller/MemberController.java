@@ -1,24 +1,70 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.CountedPage;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.MemberExportService;
+import study.querydsl.support.StatementBudget;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 1000;
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final MemberJpaRepository memberJpaRepository;
+    private final MemberRepository memberRepository;
+    private final MemberExportService memberExportService;
 
     @GetMapping("/v1/members")
+    @StatementBudget(1)
     public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
         return memberJpaRepository.searchByBuilder(condition);
     }
 
+    @GetMapping("/v2/members")
+    @StatementBudget(1)
+    public MemberCursorPage searchMemberV2(MemberSearchCondition condition,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "20") int size) {
+        return memberRepository.searchAfter(condition, cursor, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+    }
+
+    @GetMapping("/v3/members")
+    @StatementBudget(2)
+    public CountedPage<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                                     @RequestParam(defaultValue = "false") boolean approximateCount) {
+        return memberRepository.searchPageComplex(condition, pageable, approximateCount);
+    }
+
+    @GetMapping(value = "/v1/members/export", produces = APPLICATION_NDJSON)
+    @StatementBudget(1)
+    public void exportMemberV1(MemberSearchCondition condition, HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        memberExportService.exportNdjson(condition, response.getOutputStream());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String handleIllegalArgument(IllegalArgumentException e) {
+        return e.getMessage();
+    }
+
 }
@@ -0,0 +1,105 @@
+package study.querydsl.controller;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * List&lt;MemberTeamDto&gt; 응답을 Accept 에 따라 columnar 바이너리(MemberColumnarCodec) 또는 CSV 로 쓴다.
+ * CSV 는 쓰기만 지원한다.
+ */
+public class MemberTeamDtoMessageConverter extends AbstractGenericHttpMessageConverter<List<MemberTeamDto>> {
+
+    public static final MediaType COLUMNAR = MediaType.parseMediaType("application/x-member-columnar");
+    public static final MediaType CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+    private static final String CSV_HEADER = "memberId,username,age,teamId,teamName\r\n";
+
+    public MemberTeamDtoMessageConverter() {
+        super(COLUMNAR, CSV);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return mediaType != null && COLUMNAR.isCompatibleWith(mediaType) && isMemberTeamDtoList(type);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return isMemberTeamDtoList(type != null ? type : clazz) && canWrite(mediaType);
+    }
+
+    private static boolean isMemberTeamDtoList(Type type) {
+        ResolvableType resolved = ResolvableType.forType(type);
+        return List.class.isAssignableFrom(resolved.toClass())
+                && MemberTeamDto.class.equals(resolved.asCollection().resolveGeneric(0));
+    }
+
+    @Override
+    public List<MemberTeamDto> read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return MemberColumnarCodec.decode(inputMessage.getBody());
+    }
+
+    @Override
+    protected List<MemberTeamDto> readInternal(Class<? extends List<MemberTeamDto>> clazz, HttpInputMessage inputMessage) throws IOException {
+        return MemberColumnarCodec.decode(inputMessage.getBody());
+    }
+
+    @Override
+    protected void writeInternal(List<MemberTeamDto> rows, Type type, HttpOutputMessage outputMessage) throws IOException {
+        MediaType contentType = outputMessage.getHeaders().getContentType();
+        if (contentType != null && CSV.isCompatibleWith(contentType)) {
+            writeCsv(rows, outputMessage);
+        } else {
+            MemberColumnarCodec.encode(rows, outputMessage.getBody());
+        }
+    }
+
+    private static void writeCsv(List<MemberTeamDto> rows, HttpOutputMessage outputMessage) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputMessage.getBody(), StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        for (MemberTeamDto row : rows) {
+            writer.write(String.valueOf(row.getMemberId()));
+            writer.write(',');
+            writeCsvField(writer, row.getUsername());
+            writer.write(',');
+            writer.write(String.valueOf(row.getAge()));
+            writer.write(',');
+            writer.write(row.getTeamId() != null ? String.valueOf(row.getTeamId()) : "");
+            writer.write(',');
+            writeCsvField(writer, row.getTeamName());
+            writer.write("\r\n");
+        }
+        writer.flush();
+    }
+
+    // RFC 4180: 쉼표, 따옴표, 줄바꿈이 있으면 따옴표로 감싸고 따옴표는 두 번
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
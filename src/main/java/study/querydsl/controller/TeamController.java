@@ -0,0 +1,23 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.repository.TeamStatsRepository;
+import study.querydsl.support.StatementBudget;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamStatsRepository teamStatsRepository;
+
+    @GetMapping("/v1/teams/stats")
+    @StatementBudget(1)
+    public List<TeamStatsDto> teamStatsV1() {
+        return teamStatsRepository.findAll();
+    }
+}
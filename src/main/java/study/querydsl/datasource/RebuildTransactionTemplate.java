@@ -0,0 +1,24 @@
+package study.querydsl.datasource;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 캐시/인덱스를 다시 만들 때 쓰는 읽기 전용 트랜잭션.
+ * 호출한 쪽 트랜잭션과 상관없이(REQUIRES_NEW) 커밋된 데이터만 읽고, replica 라우팅을 쓰더라도 primary 에서 읽는다.
+ */
+public class RebuildTransactionTemplate extends TransactionTemplate {
+
+    public RebuildTransactionTemplate(PlatformTransactionManager transactionManager) {
+        super(transactionManager);
+        setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        setReadOnly(true);
+    }
+
+    @Override
+    public <T> T execute(TransactionCallback<T> action) {
+        return ReplicaRoutingDataSource.readFromPrimary(() -> super.execute(action));
+    }
+}
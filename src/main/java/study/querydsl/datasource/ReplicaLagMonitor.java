@@ -0,0 +1,142 @@
+package study.querydsl.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * primary 의 replication_heartbeat 에 주기적으로 현재 시각을 쓰고, 각 replica 에 복제된 값으로 지연을 잰다.
+ * maxLag 이내인 replica 만 라운드로빈으로 돌려준다.
+ * heartbeat 을 읽을 수 없는 replica 는 지연을 알 수 없으므로 뺀다.
+ */
+@Slf4j
+public class ReplicaLagMonitor implements Closeable {
+
+    private static final String CREATE_HEARTBEAT =
+            "create table if not exists replication_heartbeat (id int primary key, updated_at timestamp not null)";
+    private static final String WRITE_HEARTBEAT = "merge into replication_heartbeat key (id) values (1, ?)";
+    private static final String READ_HEARTBEAT = "select updated_at from replication_heartbeat where id = 1";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final Duration maxLag;
+    private final Clock clock;
+
+    private final Map<String, Duration> lags = new LinkedHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private volatile List<String> available = Collections.emptyList();
+    private ScheduledExecutorService scheduler;
+
+    public ReplicaLagMonitor(DataSource primary, Map<String, DataSource> replicas, Duration maxLag, Clock clock) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+        this.maxLag = maxLag;
+        this.clock = clock;
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return replicas;
+    }
+
+    public void start(Duration interval) {
+        new JdbcTemplate(primary).execute(CREATE_HEARTBEAT);
+        refresh();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 읽을 replica 이름. 쓸 수 있는 replica 가 없으면 null (primary 에서 읽는다)
+     */
+    public String nextReplica() {
+        List<String> current = available;
+        if (current.isEmpty()) {
+            return null;
+        }
+        return current.get(Math.floorMod(sequence.getAndIncrement(), current.size()));
+    }
+
+    public synchronized Map<String, Duration> lags() {
+        return new LinkedHashMap<>(lags);
+    }
+
+    // heartbeat 기록 + 지연 측정. 테스트에서는 직접 호출한다.
+    public synchronized void refresh() {
+        try {
+            new JdbcTemplate(primary).update(WRITE_HEARTBEAT, Timestamp.from(clock.instant()));
+        } catch (RuntimeException e) {
+            log.warn("failed to write replication heartbeat", e);
+        }
+
+        List<String> within = new ArrayList<>();
+        for (Map.Entry<String, DataSource> replica : replicas.entrySet()) {
+            Duration lag = measureLag(replica.getKey(), replica.getValue());
+            lags.put(replica.getKey(), lag);
+            if (lag != null && lag.compareTo(maxLag) <= 0) {
+                within.add(replica.getKey());
+            }
+        }
+        if (!within.equals(available)) {
+            log.info("readable replicas: {} (lags {})", within, lags);
+        }
+        available = Collections.unmodifiableList(within);
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("replica lag check failed", e);
+        }
+    }
+
+    private Duration measureLag(String name, DataSource replica) {
+        try {
+            Timestamp heartbeat = new JdbcTemplate(replica).queryForObject(READ_HEARTBEAT, Timestamp.class);
+            Duration lag = Duration.between(heartbeat.toInstant(), clock.instant());
+            return lag.isNegative() ? Duration.ZERO : lag;
+        } catch (RuntimeException e) {
+            log.debug("cannot read heartbeat from replica {}", name, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (DataSource dataSource : replicas.values()) {
+            if (dataSource instanceof Closeable) {
+                ((Closeable) dataSource).close();
+            }
+        }
+        if (primary instanceof Closeable) {
+            ((Closeable) primary).close();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package study.querydsl.datasource;
+
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// member.datasource.* (replicas 가 하나라도 있으면 ReplicaDataSourceConfig 가 켜진다)
+@Data
+public class ReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    // 이보다 뒤처진 replica 는 읽기 대상에서 뺀다. (전부 빠지면 primary 에서 읽는다)
+    private Duration maxLag = Duration.ofSeconds(5);
+    // primary heartbeat 기록 + replica 지연 측정 주기
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
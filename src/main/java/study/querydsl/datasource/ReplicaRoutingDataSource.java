@@ -0,0 +1,84 @@
+package study.querydsl.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 읽기 전용 트랜잭션이면 replica, 아니면 primary.
+ * 트랜잭션 시작 시점에는 readOnly 여부가 아직 바인딩되지 않으므로 반드시 LazyConnectionDataSourceProxy 로 감싸서 쓴다.
+ * 캐시/인덱스를 채우는 읽기는 readFromPrimary 로 감싸서 primary 로 보낸다. (replica 는 max-lag 만큼 뒤처져 있을 수 있다)
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+    private static final Object REPLICA_KEY = ReplicaRoutingDataSource.class.getName() + ".REPLICA";
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+
+        Map<Object, Object> targets = new HashMap<>(lagMonitor.getReplicas());
+        targets.put(PRIMARY, lagMonitor.getPrimary());
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(lagMonitor.getPrimary());
+        afterPropertiesSet();
+    }
+
+    /**
+     * action 안에서 새로 얻는 커넥션은 읽기 전용 트랜잭션이어도 primary 로 간다.
+     * 트랜잭션이 이미 replica 커넥션을 잡고 있으면 바꾸지 못하므로 isReadingReplica 로 확인할 것.
+     */
+    public static <T> T readFromPrimary(Supplier<T> action) {
+        if (PRIMARY_READS.get() != null) {
+            return action.get();
+        }
+        PRIMARY_READS.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            PRIMARY_READS.remove();
+        }
+    }
+
+    /**
+     * @return 현재 트랜잭션이 replica 커넥션으로 읽었는지. (그 결과는 공유 캐시에 넣지 않는다)
+     */
+    public static boolean isReadingReplica() {
+        return TransactionSynchronizationManager.hasResource(REPLICA_KEY);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || PRIMARY_READS.get() != null) {
+            return PRIMARY;
+        }
+        String replica = lagMonitor.nextReplica();
+        if (replica == null) {
+            return PRIMARY;
+        }
+        markReadingReplica();
+        return replica;
+    }
+
+    private static void markReadingReplica() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(REPLICA_KEY)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(REPLICA_KEY, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(REPLICA_KEY);
+            }
+        });
+    }
+}
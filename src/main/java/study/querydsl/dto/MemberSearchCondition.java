@@ -6,6 +6,8 @@ import lombok.Data;
 public class MemberSearchCondition {
 
     private String username;
+    // null 이면 EXACT
+    private UsernameMatch usernameMatch;
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
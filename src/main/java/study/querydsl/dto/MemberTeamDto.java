@@ -19,4 +19,10 @@ public class MemberTeamDto {
         this.teamId = teamId;
         this.teamName = teamName;
     }
+
+    // team 조인 없이 조회할 때. teamName 은 TeamNameDictionary 로 채운다.
+    @QueryProjection
+    public MemberTeamDto(Long memberId, String username, int age, Long teamId) {
+        this(memberId, username, age, teamId, null);
+    }
 }
@@ -0,0 +1,38 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+
+@Data
+public class TeamStatsDto {
+    private Long teamId;
+    private String teamName;
+    private long memberCount;
+    private long ageSum;
+    // 회원이 없는 팀은 avg/min/max 가 null
+    private Double ageAvg;
+    private Integer ageMin;
+    private Integer ageMax;
+
+    // group by 쿼리 결과
+    @QueryProjection
+    public TeamStatsDto(Long teamId, String teamName, Long memberCount, Long ageSum,
+                        Double ageAvg, Integer ageMin, Integer ageMax) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.memberCount = memberCount != null ? memberCount : 0;
+        this.ageSum = ageSum != null ? ageSum : 0;
+        this.ageAvg = ageAvg;
+        this.ageMin = ageMin;
+        this.ageMax = ageMax;
+    }
+
+    // team_stats 테이블 결과 (평균은 합계/건수)
+    @QueryProjection
+    public TeamStatsDto(Long teamId, String teamName, Long memberCount, Long ageSum,
+                        Integer ageMin, Integer ageMax) {
+        this(teamId, teamName, memberCount, ageSum,
+                memberCount == null || memberCount == 0 ? null : (double) ageSum / memberCount,
+                ageMin, ageMax);
+    }
+}
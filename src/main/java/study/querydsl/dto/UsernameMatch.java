@@ -0,0 +1,10 @@
+package study.querydsl.dto;
+
+/**
+ * MemberSearchCondition.username 비교 방식
+ */
+public enum UsernameMatch {
+    EXACT,
+    PREFIX,
+    CONTAINS
+}
@@ -0,0 +1,39 @@
+package study.querydsl.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString(of = {"type", "entityType"})
+public class EntityChangeEvent {
+
+    public enum Type {
+        PERSIST, UPDATE, REMOVE, BULK
+    }
+
+    private final Type type;
+    private final Class<?> entityType;
+    private final Object entity; // BULK 일 때는 null
+
+    public EntityChangeEvent(Type type, Class<?> entityType, Object entity) {
+        this.type = type;
+        this.entityType = entityType;
+        this.entity = entity;
+    }
+
+    public static EntityChangeEvent of(Type type, Object entity) {
+        return new EntityChangeEvent(type, entity.getClass(), entity);
+    }
+
+    public static EntityChangeEvent bulk(Class<?> entityType) {
+        return new EntityChangeEvent(Type.BULK, entityType, null);
+    }
+
+    public boolean isMember() {
+        return Member.class.isAssignableFrom(entityType);
+    }
+
+    public boolean isTeam() {
+        return Team.class.isAssignableFrom(entityType);
+    }
+}
@@ -0,0 +1,76 @@
+package study.querydsl.entity;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+// Hibernate 가 SpringBeanContainer 로 생성하기 때문에 생성자 주입이 가능하다.
+public class EntityChangeListener {
+
+    private static final Object SUPPRESSED_KEY = EntityChangeListener.class.getName() + ".SUPPRESSED";
+    private static final Object REBUILD_DEFERRED_KEY = EntityChangeListener.class.getName() + ".REBUILD_DEFERRED";
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public EntityChangeListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 현재 트랜잭션이 끝날 때까지 엔티티 단위 이벤트를 내지 않는다.
+     * 대량 적재처럼 행마다 이벤트를 들고 있을 필요가 없을 때, 호출한 쪽이 끝나고 EntityChangeEvent.bulk 를 대신 발행한다.
+     */
+    public static void suppressInCurrentTransaction() {
+        bindUntilCompletion(SUPPRESSED_KEY);
+    }
+
+    /**
+     * 현재 트랜잭션의 벌크 연산은 더 큰 작업(구간별 커밋)의 일부이므로, BULK 때 전체를 다시 만드는 쪽(읽기 모델, team_stats)이
+     * 이 트랜잭션에서는 재계산하지 않게 한다. 호출한 쪽이 모든 구간을 끝낸 뒤 EntityChangeEvent.bulk 를 한 번 발행한다.
+     */
+    public static void deferRebuildsInCurrentTransaction() {
+        bindUntilCompletion(REBUILD_DEFERRED_KEY);
+    }
+
+    public static boolean isRebuildDeferred() {
+        return TransactionSynchronizationManager.hasResource(REBUILD_DEFERRED_KEY);
+    }
+
+    private static void bindUntilCompletion(Object key) {
+        if (TransactionSynchronizationManager.hasResource(key)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(key, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(key);
+            }
+        });
+    }
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        publish(EntityChangeEvent.Type.PERSIST, entity);
+    }
+
+    @PostUpdate
+    public void postUpdate(Object entity) {
+        publish(EntityChangeEvent.Type.UPDATE, entity);
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        publish(EntityChangeEvent.Type.REMOVE, entity);
+    }
+
+    private void publish(EntityChangeEvent.Type type, Object entity) {
+        if (!TransactionSynchronizationManager.hasResource(SUPPRESSED_KEY)) {
+            eventPublisher.publishEvent(EntityChangeEvent.of(type, entity));
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+// 팀 이름은 유일하지 않다
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(EntityChangeListener.class)
 @Getter
 @Setter
 @ToString(exclude = {"memberList"})
@@ -14,7 +20,9 @@ import java.util.List;
 public class Team {
 
     @Id
-    @GeneratedValue
+    // allocationSize > 1 이면 pooled optimizer 가 적용되어 시퀀스 호출이 50건당 1번으로 줄어든다.
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq")
+    @SequenceGenerator(name = "team_seq", sequenceName = "team_seq", allocationSize = 50)
     @Column(name = "team_id")
     private Long id;
     private String name;
@@ -23,7 +31,8 @@ public class Team {
         this.name = name;
     }
 
-    @OneToMany(mappedBy = "team", fetch = FetchType.EAGER)
+    // 기본은 LAZY, 필요한 곳에서만 MemberFetchPlan 으로 로딩 (hibernate.default_batch_fetch_size 로 IN 쿼리 배치)
+    @OneToMany(mappedBy = "team")
     private List<Member> memberList = new ArrayList<>();
 
 }
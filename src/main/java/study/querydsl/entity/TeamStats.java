@@ -0,0 +1,40 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * 팀별 회원 나이 집계. TeamStatsMaintainer 가 커밋 직전에 바뀐 팀만 다시 계산한다.
+ * 평균은 ageSum / memberCount 로 구한다. 직접 persist/수정하지 않는다.
+ */
+@Entity
+@Table(name = "team_stats")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class TeamStats {
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+
+    @Column(name = "member_count")
+    private long memberCount;
+
+    @Column(name = "age_sum")
+    private long ageSum;
+
+    // 회원이 없는 팀은 null
+    @Column(name = "age_min")
+    private Integer ageMin;
+
+    @Column(name = "age_max")
+    private Integer ageMax;
+}
@@ -0,0 +1,31 @@
+package study.querydsl.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.support.ConnectionWaitMetricsTrackerFactory;
+
+@Configuration
+public class MetricsConfig {
+
+    // Hikari 풀에서 커넥션 대기 시간을 잰다. (ReplicaDataSourceConfig 가 직접 만드는 풀은 거기서 설치)
+    // 부트가 넣는 hikaricp.* 메트릭도 유지되도록 Micrometer tracker 에 전달한다.
+    @Bean
+    public static BeanPostProcessor connectionWaitTrackingPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource) {
+                    MeterRegistry registry = meterRegistry.getIfAvailable();
+                    ConnectionWaitMetricsTrackerFactory.install((HikariDataSource) bean,
+                            registry != null ? new MicrometerMetricsTrackerFactory(registry) : null);
+                }
+                return bean;
+            }
+        };
+    }
+}
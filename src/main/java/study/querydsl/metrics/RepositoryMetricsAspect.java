@@ -0,0 +1,124 @@
+package study.querydsl.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberCursorPage;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.support.QueryCounter;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemberRepository(+MemberRepositoryCustom), MemberJpaRepository 메서드마다
+ * 실행 시간, 반환 row 수, 실행한 SQL 수, 커넥션 대기 시간을 기록한다.
+ * 메서드별 meter 는 한 번만 만들어서 재사용한다.
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+    static final String INVOCATIONS = "repository.invocations";
+    static final String ROWS = "repository.rows";
+    static final String STATEMENTS = "repository.statements";
+    static final String CONNECTION_WAIT = "repository.connection.wait";
+    static final String ERRORS = "repository.errors";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<Method, MethodMeters> meters = new ConcurrentHashMap<>();
+
+    public RepositoryMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * *(..)) && (this(study.querydsl.repository.MemberRepository) || target(study.querydsl.repository.MemberJpaRepository))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        if (method.getDeclaringClass() == Object.class) {
+            return joinPoint.proceed();
+        }
+
+        MethodMeters methodMeters = meters.computeIfAbsent(method, m -> new MethodMeters(repositoryName(joinPoint), m.getName()));
+        long statements = QueryCounter.statements();
+        long connectionWait = QueryCounter.connectionWaitNanos();
+        long started = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            long rows = rowCount(result);
+            if (rows >= 0) {
+                methodMeters.rows.record(rows);
+            }
+            return result;
+        } catch (Throwable e) {
+            methodMeters.errors.increment();
+            throw e;
+        } finally {
+            methodMeters.invocations.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            methodMeters.statements.record(QueryCounter.statements() - statements);
+            methodMeters.connectionWait.record(QueryCounter.connectionWaitNanos() - connectionWait, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String repositoryName(ProceedingJoinPoint joinPoint) {
+        return joinPoint.getThis() instanceof MemberRepository
+                ? MemberRepository.class.getSimpleName()
+                : AopUtils.getTargetClass(joinPoint.getTarget()).getSimpleName();
+    }
+
+    // 알 수 없는 반환 타입(count, exists, iterator 등)은 -1
+    static long rowCount(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof MemberCursorPage) {
+            return ((MemberCursorPage) result).getContent().size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        return -1;
+    }
+
+    private class MethodMeters {
+        private final Timer invocations;
+        private final DistributionSummary rows;
+        private final DistributionSummary statements;
+        private final Timer connectionWait;
+        private final Counter errors;
+
+        MethodMeters(String repository, String method) {
+            invocations = Timer.builder(INVOCATIONS)
+                    .tag("repository", repository).tag("method", method)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            rows = DistributionSummary.builder(ROWS)
+                    .tag("repository", repository).tag("method", method)
+                    .register(meterRegistry);
+            statements = DistributionSummary.builder(STATEMENTS)
+                    .tag("repository", repository).tag("method", method)
+                    .register(meterRegistry);
+            connectionWait = Timer.builder(CONNECTION_WAIT)
+                    .tag("repository", repository).tag("method", method)
+                    .register(meterRegistry);
+            errors = Counter.builder(ERRORS)
+                    .tag("repository", repository).tag("method", method)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /actuator/repositories : 리포지토리 메서드별 요약
+ * (호출 수, 평균/최대/p50/p95/p99 지연, 평균 row 수, 평균 SQL 수, 평균 커넥션 대기)
+ */
+@Component
+@Endpoint(id = "repositories")
+public class RepositoryMetricsEndpoint {
+
+    private final MeterRegistry meterRegistry;
+
+    public RepositoryMetricsEndpoint(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> repositories() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        for (Timer timer : meterRegistry.find(RepositoryMetricsAspect.INVOCATIONS).timers()) {
+            String repository = timer.getId().getTag("repository");
+            String method = timer.getId().getTag("method");
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", snapshot.count());
+            summary.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+            summary.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+            summary.put("p50Ms", percentile(snapshot, 0.50));
+            summary.put("p95Ms", percentile(snapshot, 0.95));
+            summary.put("p99Ms", percentile(snapshot, 0.99));
+            summary.put("meanRows", mean(RepositoryMetricsAspect.ROWS, repository, method));
+            summary.put("meanStatements", mean(RepositoryMetricsAspect.STATEMENTS, repository, method));
+            Timer connectionWait = meterRegistry.find(RepositoryMetricsAspect.CONNECTION_WAIT)
+                    .tag("repository", repository).tag("method", method).timer();
+            summary.put("meanConnectionWaitMs", connectionWait == null ? 0 : connectionWait.mean(TimeUnit.MILLISECONDS));
+
+            result.put(repository + "." + method, summary);
+        }
+        return result;
+    }
+
+    private double mean(String name, String repository, String method) {
+        DistributionSummary summary = meterRegistry.find(name)
+                .tag("repository", repository).tag("method", method).summary();
+        return summary == null ? 0 : summary.mean();
+    }
+
+    // percentile histogram 버킷(누적 count)에서 해당 분위를 넘는 첫 버킷의 상한값
+    private static double percentile(HistogramSnapshot snapshot, double quantile) {
+        double target = snapshot.count() * quantile;
+        for (CountAtBucket bucket : snapshot.histogramCounts()) {
+            if (bucket.count() >= target) {
+                return bucket.bucket(TimeUnit.MILLISECONDS);
+            }
+        }
+        return snapshot.max(TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,41 @@
+package study.querydsl.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * IN 절 파라미터를 MAX_SIZE 씩 나눈다.
+ * "in (?, ?, ...)" 모양 수를 줄이는 패딩은 Hibernate 의 hibernate.query.in_clause_parameter_padding 이 한다. (application.yml)
+ */
+final class InListChunks {
+
+    // Oracle 등 IN 목록 1000개 제한
+    static final int MAX_SIZE = 1000;
+
+    private InListChunks() {
+    }
+
+    /**
+     * 중복을 뺀 뒤 MAX_SIZE 씩 나눈다.
+     */
+    static <T> List<List<T>> of(Collection<T> values) {
+        List<T> distinct = new ArrayList<>(new LinkedHashSet<>(values));
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += MAX_SIZE) {
+            chunks.add(distinct.subList(from, Math.min(from + MAX_SIZE, distinct.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * 나누지 않고 IN 하나로 보낼 목록. 다른 조건과 함께 쓰여 나눌 수 없으므로 MAX_SIZE 를 넘으면 거부한다.
+     */
+    static <T> List<T> single(List<T> values) {
+        if (values.size() > MAX_SIZE) {
+            throw new IllegalArgumentException("in list larger than " + MAX_SIZE + ": " + values.size());
+        }
+        return values;
+    }
+}
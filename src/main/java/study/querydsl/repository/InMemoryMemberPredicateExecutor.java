@@ -0,0 +1,230 @@
+package study.querydsl.repository;
+
+import com.querydsl.collections.CollQueryFactory;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.datasource.RebuildTransactionTemplate;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.EntityWriteTracker;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * QuerydslPredicateExecutor 와 같은 Predicate 를 메모리에 캐시한 Member(+Team) 목록에서 평가한다.
+ * querydsl-collections 가 Predicate 를 자바 코드로 컴파일하는데, 상수는 인자로 빠지므로 모양(shape)마다 한 번만 컴파일된다.
+ * 작은 데이터에만 쓴다. 회원이 maximum-size 를 넘거나, 커밋 전 변경이 있거나, 메모리에서 평가할 수 없는 Predicate
+ * (QMember.member 가 아닌 별칭, memberList 같은 지연 로딩 경로 등)는 MemberRepository 로 DB 에서 조회한다.
+ * member.team.eq(team), member.eq(m) 처럼 엔티티끼리 비교하는 Predicate 도 DB 로 보낸다. 메모리에서는 equals 가
+ * 인스턴스 비교라서 (캐시한 엔티티와 호출한 쪽 엔티티는 다른 인스턴스) 예외 없이 틀린 결과가 나온다.
+ * findAll 은 캐시한 엔티티를 그대로 내주지 않는다. (쓰기 트랜잭션이면 DB 조회, 아니면 복사본)
+ * Member/Team 변경(벌크 포함)이 커밋되면 버리고 다음 조회 때 다시 읽는다.
+ */
+@Slf4j
+@Component
+public class InMemoryMemberPredicateExecutor {
+
+    private final MemberRepository memberRepository;
+    private final EntityManager entityManager;
+    private final EntityWriteTracker writeTracker;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final int maximumSize;
+
+    // 로딩 중에 무효화가 끼어들면 옛 목록을 저장하지 않도록 세대 번호로 확인한다.
+    private final AtomicLong generation = new AtomicLong();
+    private volatile List<Member> current;
+
+    public InMemoryMemberPredicateExecutor(MemberRepository memberRepository,
+                                           EntityManager entityManager,
+                                           EntityWriteTracker writeTracker,
+                                           PlatformTransactionManager transactionManager,
+                                           @Value("${member.search.in-memory.enabled:false}") boolean enabled,
+                                           @Value("${member.search.in-memory.maximum-size:10000}") int maximumSize) {
+        this.memberRepository = memberRepository;
+        this.entityManager = entityManager;
+        this.writeTracker = writeTracker;
+        // 호출한 쪽 트랜잭션에 참여하면 그 영속성 컨텍스트의 엔티티가 캐시에 들어가므로 따로 연다
+        this.readOnlyTransaction = new RebuildTransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * 쓰기 트랜잭션 안에서는 변경 감지가 되도록 DB 에서 조회해 영속 상태의 Member 를 돌려준다.
+     * 그 밖에는 캐시한 엔티티의 복사본(준영속, team 포함, team.memberList 는 비어 있음)을 돌려주므로 고쳐도 캐시에 남지 않는다.
+     */
+    public List<Member> findAll(Predicate predicate) {
+        List<Member> members = comparesEntities(predicate) || inWriteTransaction() ? null : members();
+        if (members != null) {
+            try {
+                return copies(CollQueryFactory.from(member, members).where(predicate).fetch());
+            } catch (RuntimeException e) {
+                log.debug("predicate not evaluable in memory, falling back to database: {}", predicate, e);
+            }
+        }
+        return toList(memberRepository.findAll(predicate));
+    }
+
+    public long count(Predicate predicate) {
+        List<Member> members = comparesEntities(predicate) ? null : members();
+        if (members != null) {
+            try {
+                return CollQueryFactory.from(member, members).where(predicate).fetchCount();
+            } catch (RuntimeException e) {
+                log.debug("predicate not evaluable in memory, falling back to database: {}", predicate, e);
+            }
+        }
+        return memberRepository.count(predicate);
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        current = null;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        if (event.isMember() || event.isTeam()) {
+            invalidate();
+        }
+    }
+
+    /**
+     * @return 캐시한 목록. 꺼져 있거나, 커밋 전 변경이 있거나, 회원이 너무 많으면 null
+     */
+    private List<Member> members() {
+        if (!enabled || writeTracker.hasPendingWrites()) {
+            return null;
+        }
+        List<Member> members = current;
+        if (members == null) {
+            members = load();
+        }
+        return members.size() > maximumSize ? null : members;
+    }
+
+    // 트랜잭션이 끝나면 준영속이 되므로 team 은 fetch join 으로 미리 읽어 둔다.
+    private List<Member> load() {
+        long loadingGeneration = generation.get();
+        List<Member> members = readOnlyTransaction.execute(status -> entityManager
+                .createQuery("select m from Member m left join fetch m.team", Member.class)
+                .setMaxResults(maximumSize + 1)
+                .getResultList());
+
+        if (members.size() > maximumSize) {
+            log.info("in-memory predicate executor disabled: more than {} members", maximumSize);
+        }
+        List<Member> loaded = Collections.unmodifiableList(members);
+        if (generation.get() == loadingGeneration) {
+            current = loaded;
+        }
+        return loaded;
+    }
+
+    // is null / is not null 은 참조만 보므로 메모리에서도 맞다
+    static boolean comparesEntities(Expression<?> expression) {
+        // BooleanBuilder 는 Operation 이 아니라 조립한 Predicate 를 감싸고 있다 (중첩될 수 있다)
+        if (expression instanceof BooleanBuilder) {
+            return comparesEntities(((BooleanBuilder) expression).getValue());
+        }
+        if (!(expression instanceof Operation)) {
+            return false;
+        }
+        Operation<?> operation = (Operation<?>) expression;
+        boolean nullCheck = operation.getOperator() == Ops.IS_NULL || operation.getOperator() == Ops.IS_NOT_NULL;
+        for (Expression<?> arg : operation.getArgs()) {
+            if ((!nullCheck && isEntityValued(arg)) || comparesEntities(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEntityValued(Expression<?> expression) {
+        if (expression instanceof Path) {
+            return isEntity(expression.getType());
+        }
+        if (expression instanceof Constant) {
+            Object value = ((Constant<?>) expression).getConstant();
+            if (value instanceof Collection) {
+                for (Object each : (Collection<?>) value) {
+                    if (each != null && isEntity(each.getClass())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return value != null && isEntity(value.getClass());
+        }
+        return false;
+    }
+
+    // 프록시는 엔티티의 하위 클래스이고 @Entity 는 상속되지 않으므로 상위 클래스까지 본다
+    private static boolean isEntity(Class<?> type) {
+        for (Class<?> each = type; each != null; each = each.getSuperclass()) {
+            if (each.isAnnotationPresent(Entity.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    // 같은 팀 회원은 같은 Team 복사본을 가리킨다
+    private static List<Member> copies(List<Member> cached) {
+        Map<Long, Team> teams = new HashMap<>();
+        List<Member> copies = new ArrayList<>(cached.size());
+        for (Member each : cached) {
+            Member copy = new Member(each.getUsername(), each.getAge());
+            copy.setId(each.getId());
+            Team team = each.getTeam();
+            if (team != null) {
+                copy.setTeam(teams.computeIfAbsent(team.getId(), id -> {
+                    Team teamCopy = new Team(team.getName());
+                    teamCopy.setId(id);
+                    return teamCopy;
+                }));
+            }
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static List<Member> toList(Iterable<Member> members) {
+        if (members instanceof List) {
+            return (List<Member>) members;
+        }
+        List<Member> list = new ArrayList<>();
+        members.forEach(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,339 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.datasource.RebuildTransactionTemplate;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.support.EntityWriteTracker;
+import study.querydsl.support.LongIntHashMap;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * age -> 회원 BitSet 인덱스. 회원마다 0 부터 촘촘한 번호(ordinal)를 붙이고, 나이별/팀별로 그 번호의 BitSet 을 둔다.
+ * age 범위 count 는 범위 안 BitSet 의 cardinality 합, 팀 조건이 있으면 팀 BitSet 과의 교집합 크기다.
+ * searchPageComplex 의 count 쿼리를 대신한다. 커밋된 Member 변경을 하나씩 반영하고, 벌크 연산 후에는 백그라운드에서 다시 읽는다.
+ * 다시 읽는 동안에는 null 을 돌려준다. (요청 스레드에서 전체를 읽지 않는다)
+ */
+@Slf4j
+@Component
+public class MemberAgeIndex {
+
+    private final EntityManager entityManager;
+    private final EntityWriteTracker writeTracker;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final ExecutorService loader;
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+
+    private volatile State current;
+
+    public MemberAgeIndex(EntityManager entityManager,
+                          EntityWriteTracker writeTracker,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${member.search.age-index.enabled:false}") boolean enabled) {
+        this.entityManager = entityManager;
+        this.writeTracker = writeTracker;
+        this.readOnlyTransaction = new RebuildTransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-age-index-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * age/teamName 조건만 있는 검색의 전체 건수.
+     * @param teams teamName 조건이 있을 때 팀 이름 -> id 를 풀 사전
+     * @return 인덱스로 답할 수 없으면 (꺼져 있음, 로딩 중, 커밋 전 변경, username 조건, 팀 사전 없음) null
+     */
+    public Long count(MemberSearchKey key, TeamNameDictionary.Snapshot teams) {
+        if (!enabled || key.getUsername() != null || (key.getTeamName() != null && teams == null)
+                || writeTracker.hasPendingWrites()) {
+            return null;
+        }
+        State state = current;
+        if (state == null || !state.ready) {
+            return null;
+        }
+        int ageGoe = key.getAgeGoe() != null ? key.getAgeGoe() : Integer.MIN_VALUE;
+        int ageLoe = key.getAgeLoe() != null ? key.getAgeLoe() : Integer.MAX_VALUE;
+        return key.getTeamName() != null
+                ? state.count(ageGoe, ageLoe, teams.idsOf(key.getTeamName()))
+                : state.count(ageGoe, ageLoe);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            reload();
+        }
+    }
+
+    /**
+     * 지금 인덱스를 버리고 백그라운드에서 다시 읽는다. 이미 대기 중인 재로딩이 있으면 그것으로 합친다.
+     */
+    public void reload() {
+        current = null;
+        if (reloadQueued.compareAndSet(false, true)) {
+            loader.execute(() -> {
+                reloadQueued.set(false);
+                try {
+                    load();
+                } catch (RuntimeException e) {
+                    log.warn("member age index load failed, counting in the database until the next reload", e);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        State state = current;
+        if (!enabled || state == null || !event.isMember()) {
+            return;
+        }
+        if (event.getType() == EntityChangeEvent.Type.BULK) {
+            reload();
+            return;
+        }
+
+        Member member = (Member) event.getEntity();
+        if (event.getType() == EntityChangeEvent.Type.REMOVE) {
+            state.remove(member.getId());
+        } else {
+            // 커밋 후라 프록시를 초기화하지 않는다 (getId 만)
+            state.put(member.getId(), member.getAge(), member.getTeam() != null ? member.getTeam().getId() : null, true);
+        }
+    }
+
+    /**
+     * 전체를 지금 스레드에서 다시 읽는다. 읽는 동안 커밋된 변경은 새 인덱스에 바로 반영되고, 그 회원은 덮어쓰지 않는다.
+     */
+    public synchronized void load() {
+        State state = new State();
+        current = state;
+        readOnlyTransaction.execute(status -> {
+            ScrollableResults rows = entityManager.unwrap(Session.class)
+                    .createQuery("select m.id, m.age, m.team.id from Member m")
+                    .setReadOnly(true)
+                    .setFetchSize(1000)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (rows.next()) {
+                    state.put((Long) rows.get(0), (Integer) rows.get(1), (Long) rows.get(2), false);
+                }
+            } finally {
+                rows.close();
+            }
+            return null;
+        });
+        state.ready = true;
+        log.debug("member age index loaded: {} members, {} distinct ages", state.ordinalById.size(), state.bucketCount);
+    }
+
+    private static final class State {
+
+        private static final long NO_TEAM = Long.MIN_VALUE;
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        // member id <-> ordinal. 지운 ordinal 은 free 에 두었다가 재사용한다.
+        private final LongIntHashMap ordinalById = new LongIntHashMap(1024);
+        private final BitSet free = new BitSet();
+        private int nextOrdinal;
+        private int[] ageByOrdinal = new int[1024];
+        private long[] teamByOrdinal = new long[1024];
+
+        // 나이 오름차순 버킷
+        private int[] bucketAges = new int[16];
+        private BitSet[] buckets = new BitSet[16];
+        private int bucketCount;
+
+        private final LongIntHashMap teamSlotById = new LongIntHashMap();
+        private BitSet[] teamMembers = new BitSet[16];
+        private int teamCount;
+
+        // 로딩 중에 이벤트로 반영된 회원. 로딩 쿼리의 (더 오래된) 행으로 덮어쓰지 않는다.
+        private final Set<Long> changedWhileLoading = new HashSet<>();
+        private volatile boolean ready;
+
+        private void put(long id, int age, Long teamId, boolean fromEvent) {
+            lock.writeLock().lock();
+            try {
+                if (!ready) {
+                    if (fromEvent) {
+                        changedWhileLoading.add(id);
+                    } else if (changedWhileLoading.contains(id)) {
+                        return;
+                    }
+                }
+                int ordinal = ordinalById.get(id);
+                if (ordinal == LongIntHashMap.MISSING) {
+                    ordinal = allocateOrdinal();
+                    ordinalById.put(id, ordinal);
+                } else {
+                    unlink(ordinal);
+                }
+                link(ordinal, age, teamId != null ? teamId : NO_TEAM);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void remove(long id) {
+            lock.writeLock().lock();
+            try {
+                if (!ready) {
+                    changedWhileLoading.add(id);
+                }
+                int ordinal = ordinalById.remove(id);
+                if (ordinal != LongIntHashMap.MISSING) {
+                    unlink(ordinal);
+                    free.set(ordinal);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private long count(int ageGoe, int ageLoe) {
+            lock.readLock().lock();
+            try {
+                long count = 0;
+                for (int i = firstBucket(ageGoe); i < bucketCount && bucketAges[i] <= ageLoe; i++) {
+                    count += buckets[i].cardinality();
+                }
+                return count;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private long count(int ageGoe, int ageLoe, List<Long> teamIds) {
+            lock.readLock().lock();
+            try {
+                BitSet teamBits = new BitSet();
+                for (Long teamId : teamIds) {
+                    int slot = teamSlotById.get(teamId);
+                    if (slot != LongIntHashMap.MISSING) {
+                        teamBits.or(teamMembers[slot]);
+                    }
+                }
+                if (teamBits.isEmpty()) {
+                    return 0;
+                }
+                // 나이 조건이 없으면 팀 BitSet 만 센다
+                if (ageGoe == Integer.MIN_VALUE && ageLoe == Integer.MAX_VALUE) {
+                    return teamBits.cardinality();
+                }
+                BitSet ageBits = new BitSet();
+                for (int i = firstBucket(ageGoe); i < bucketCount && bucketAges[i] <= ageLoe; i++) {
+                    ageBits.or(buckets[i]);
+                }
+                ageBits.and(teamBits);
+                return ageBits.cardinality();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int allocateOrdinal() {
+            int ordinal = free.nextSetBit(0);
+            if (ordinal >= 0) {
+                free.clear(ordinal);
+                return ordinal;
+            }
+            ordinal = nextOrdinal++;
+            if (ordinal == ageByOrdinal.length) {
+                ageByOrdinal = Arrays.copyOf(ageByOrdinal, ordinal << 1);
+                teamByOrdinal = Arrays.copyOf(teamByOrdinal, ordinal << 1);
+            }
+            return ordinal;
+        }
+
+        private void link(int ordinal, int age, long teamId) {
+            ageByOrdinal[ordinal] = age;
+            teamByOrdinal[ordinal] = teamId;
+            bucket(age).set(ordinal);
+            if (teamId != NO_TEAM) {
+                int slot = teamSlotById.get(teamId);
+                if (slot == LongIntHashMap.MISSING) {
+                    slot = teamCount++;
+                    if (slot == teamMembers.length) {
+                        teamMembers = Arrays.copyOf(teamMembers, slot << 1);
+                    }
+                    teamMembers[slot] = new BitSet();
+                    teamSlotById.put(teamId, slot);
+                }
+                teamMembers[slot].set(ordinal);
+            }
+        }
+
+        private void unlink(int ordinal) {
+            int i = Arrays.binarySearch(bucketAges, 0, bucketCount, ageByOrdinal[ordinal]);
+            if (i >= 0) {
+                buckets[i].clear(ordinal);
+            }
+            long teamId = teamByOrdinal[ordinal];
+            if (teamId != NO_TEAM) {
+                int slot = teamSlotById.get(teamId);
+                if (slot != LongIntHashMap.MISSING) {
+                    teamMembers[slot].clear(ordinal);
+                }
+            }
+        }
+
+        private BitSet bucket(int age) {
+            int i = Arrays.binarySearch(bucketAges, 0, bucketCount, age);
+            if (i >= 0) {
+                return buckets[i];
+            }
+            int insertAt = -i - 1;
+            if (bucketCount == bucketAges.length) {
+                bucketAges = Arrays.copyOf(bucketAges, bucketCount << 1);
+                buckets = Arrays.copyOf(buckets, bucketCount << 1);
+            }
+            System.arraycopy(bucketAges, insertAt, bucketAges, insertAt + 1, bucketCount - insertAt);
+            System.arraycopy(buckets, insertAt, buckets, insertAt + 1, bucketCount - insertAt);
+            bucketAges[insertAt] = age;
+            buckets[insertAt] = new BitSet();
+            bucketCount++;
+            return buckets[insertAt];
+        }
+
+        // ageGoe 이상인 첫 버킷
+        private int firstBucket(int ageGoe) {
+            int i = Arrays.binarySearch(bucketAges, 0, bucketCount, ageGoe);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package study.querydsl.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * 회원 컬럼 저장소. 컬럼마다 direct ByteBuffer(힙 밖) 하나씩, 행 번호로 접근한다.
+ * username/team 은 사전 코드(int), 값이 없으면 NONE. 행 삭제는 마지막 행을 그 자리로 옮긴다.
+ * 동기화하지 않는다. (MemberSnapshot 이 잠금을 건다)
+ */
+final class MemberColumns {
+
+    static final int NONE = -1;
+
+    private LongBuffer ids;
+    private IntBuffer ages;
+    private IntBuffer usernameCodes;
+    private IntBuffer teamCodes;
+    private int capacity;
+    private int size;
+
+    MemberColumns(int initialCapacity) {
+        capacity = Math.max(initialCapacity, 16);
+        ids = allocate(capacity, Long.BYTES).asLongBuffer();
+        ages = allocate(capacity, Integer.BYTES).asIntBuffer();
+        usernameCodes = allocate(capacity, Integer.BYTES).asIntBuffer();
+        teamCodes = allocate(capacity, Integer.BYTES).asIntBuffer();
+    }
+
+    int size() {
+        return size;
+    }
+
+    int append(long id, int age, int usernameCode, int teamCode) {
+        if (size == capacity) {
+            grow();
+        }
+        int row = size++;
+        ids.put(row, id);
+        set(row, age, usernameCode, teamCode);
+        return row;
+    }
+
+    void set(int row, int age, int usernameCode, int teamCode) {
+        ages.put(row, age);
+        usernameCodes.put(row, usernameCode);
+        teamCodes.put(row, teamCode);
+    }
+
+    /**
+     * @return 지운 자리로 옮겨 온 행의 id. 마지막 행을 지웠으면 Long.MIN_VALUE
+     */
+    long remove(int row) {
+        int last = --size;
+        if (row == last) {
+            return Long.MIN_VALUE;
+        }
+        long movedId = ids.get(last);
+        ids.put(row, movedId);
+        set(row, ages.get(last), usernameCodes.get(last), teamCodes.get(last));
+        return movedId;
+    }
+
+    long id(int row) {
+        return ids.get(row);
+    }
+
+    int age(int row) {
+        return ages.get(row);
+    }
+
+    int usernameCode(int row) {
+        return usernameCodes.get(row);
+    }
+
+    int teamCode(int row) {
+        return teamCodes.get(row);
+    }
+
+    long offHeapBytes() {
+        return (long) capacity * (Long.BYTES + 3 * Integer.BYTES);
+    }
+
+    private void grow() {
+        int newCapacity = capacity << 1;
+        ids = copy(ids, allocate(newCapacity, Long.BYTES).asLongBuffer());
+        ages = copy(ages, allocate(newCapacity, Integer.BYTES).asIntBuffer());
+        usernameCodes = copy(usernameCodes, allocate(newCapacity, Integer.BYTES).asIntBuffer());
+        teamCodes = copy(teamCodes, allocate(newCapacity, Integer.BYTES).asIntBuffer());
+        capacity = newCapacity;
+    }
+
+    private static ByteBuffer allocate(int capacity, int width) {
+        return ByteBuffer.allocateDirect(capacity * width).order(ByteOrder.nativeOrder());
+    }
+
+    private LongBuffer copy(LongBuffer from, LongBuffer to) {
+        LongBuffer source = from.duplicate();
+        source.limit(size).position(0);
+        to.put(source).clear();
+        return to;
+    }
+
+    private IntBuffer copy(IntBuffer from, IntBuffer to) {
+        IntBuffer source = from.duplicate();
+        source.limit(size).position(0);
+        to.put(source).clear();
+        return to;
+    }
+}
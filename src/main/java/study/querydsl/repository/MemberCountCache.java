@@ -0,0 +1,109 @@
+package study.querydsl.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.querydsl.datasource.ReplicaRoutingDataSource;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.support.EntityWriteTracker;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * searchPageComplex 의 count 쿼리 결과 캐시.
+ * TTL 이 지난 값도 approximate 모드에서 쓸 수 있도록 바로 버리지 않고 들고 있는다.
+ * 캐시 미스도 호출한 트랜잭션의 라우팅을 그대로 따른다. replica 에서 센 값은 replica 지연 허용치(max-lag)까지만 fresh 로 본다.
+ */
+@Component
+public class MemberCountCache {
+
+    private final Cache<MemberSearchKey, CountEntry> cache;
+    private final long ttlNanos;
+    private final long replicaTtlNanos;
+    private final boolean enabled;
+    private final EntityWriteTracker writeTracker;
+
+    public MemberCountCache(@Value("${member.search.count-cache.enabled:true}") boolean enabled,
+                            @Value("${member.search.count-cache.ttl:30s}") Duration ttl,
+                            @Value("${member.search.count-cache.maximum-size:10000}") long maximumSize,
+                            @Value("${member.datasource.max-lag:5s}") Duration replicaMaxLag,
+                            EntityWriteTracker writeTracker) {
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.replicaTtlNanos = Math.min(ttl.toNanos(), replicaMaxLag.toNanos());
+        this.writeTracker = writeTracker;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    public long count(MemberSearchKey key, LongSupplier countQuery) {
+        if (!isUsable()) {
+            return countQuery.getAsLong();
+        }
+
+        CountEntry entry = cache.getIfPresent(key);
+        if (entry != null && entry.isFresh()) {
+            return entry.count;
+        }
+
+        long count = countQuery.getAsLong();
+        long ttl = ReplicaRoutingDataSource.isReadingReplica() ? replicaTtlNanos : ttlNanos;
+        cache.put(key, new CountEntry(count, System.nanoTime(), ttl));
+        return count;
+    }
+
+    // TTL 이 지났더라도 남아있는 값을 돌려준다. 없으면 null
+    public CountEntry peek(MemberSearchKey key) {
+        return isUsable() ? cache.getIfPresent(key) : null;
+    }
+
+    public boolean hasFresh(MemberSearchKey key) {
+        CountEntry entry = peek(key);
+        return entry != null && entry.isFresh();
+    }
+
+    public boolean isFresh(CountEntry entry) {
+        return entry.isFresh();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        if (event.isMember() || event.isTeam()) {
+            invalidateAll();
+        }
+    }
+
+    private boolean isUsable() {
+        // 현재 트랜잭션에서 아직 커밋 안 된 변경이 있으면 캐시를 쓰면 안 된다.
+        return enabled && !writeTracker.hasPendingWrites();
+    }
+
+    public static class CountEntry {
+        private final long count;
+        private final long createdAt;
+        private final long ttlNanos;
+
+        CountEntry(long count, long createdAt, long ttlNanos) {
+            this.count = count;
+            this.createdAt = createdAt;
+            this.ttlNanos = ttlNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        boolean isFresh() {
+            return System.nanoTime() - createdAt < ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package study.querydsl.repository;
+
+// searchEntity 에서 연관관계를 어디까지 미리 로딩할지
+public enum MemberFetchPlan {
+    /** Member 만. team 은 프록시 */
+    MEMBER,
+    /** team 까지 fetch join */
+    TEAM,
+    /** team fetch join + team.memberList 를 batch size 단위 IN 쿼리로 초기화 */
+    TEAM_MEMBERS
+}
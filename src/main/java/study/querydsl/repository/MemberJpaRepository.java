@@ -1,18 +1,29 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
 import study.querydsl.entity.Member;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
@@ -20,12 +31,20 @@ import static study.querydsl.entity.QTeam.team;
 @Repository
 public class MemberJpaRepository {
 
+    // findByUsername 쿼리 캐시 리전 (application.conf)
+    public static final String BY_USERNAME_REGION = "member.byUsername";
+
     private final EntityManager entityManager;
     private final JPAQueryFactory jpaQueryFactory;
+    private final TeamNameDictionary teamNameDictionary;
+    private final UsernameIndex usernameIndex;
 
-    public MemberJpaRepository(EntityManager entityManager) {
+    public MemberJpaRepository(EntityManager entityManager, TeamNameDictionary teamNameDictionary,
+                               UsernameIndex usernameIndex) {
         this.entityManager = entityManager;
         this.jpaQueryFactory = new JPAQueryFactory(entityManager);
+        this.teamNameDictionary = teamNameDictionary;
+        this.usernameIndex = usernameIndex;
     }
 
 
@@ -33,84 +52,108 @@ public class MemberJpaRepository {
         entityManager.persist(member);
     }
 
+    @Transactional(readOnly = true)
     public Optional<Member> findById(Long id) {
         Member member = entityManager.find(Member.class, id);
         return Optional.ofNullable(member);
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll() {
         return entityManager.createQuery("select m from Member m", Member.class).getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsername(String username) {
         return entityManager.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username", username)
+                .setHint(QueryHints.HINT_CACHEABLE, true)
+                .setHint(QueryHints.HINT_CACHE_REGION, BY_USERNAME_REGION)
                 .getResultList();
     }
 
-    public List<MemberTeamDto> searchByBuilder(MemberSearchCondition memberSearchCondition) {
-
-        BooleanBuilder builder = new BooleanBuilder();
-
-        if (StringUtils.hasText(memberSearchCondition.getUsername())) {
-            builder.and(member.username.eq(memberSearchCondition.getUsername()));
-        }
-
-        if (StringUtils.hasText(memberSearchCondition.getTeamName())) {
-            builder.and(team.name.eq(memberSearchCondition.getTeamName()));
-        }
-
-        if (memberSearchCondition.getAgeGoe() != null) {
-            builder.and(member.age.goe(memberSearchCondition.getAgeGoe()));
+    /**
+     * id 목록을 IN 쿼리로 한 번에 조회한다. 요청한 순서대로 돌려주고 없는 id 는 빠진다. (중복 id 는 한 번만)
+     */
+    @Transactional(readOnly = true)
+    public List<Member> findAllByIds(Collection<Long> ids) {
+        Map<Long, Member> byId = new HashMap<>();
+        for (List<Long> chunk : InListChunks.of(ids)) {
+            for (Member found : jpaQueryFactory.selectFrom(member).where(member.id.in(chunk)).fetch()) {
+                byId.put(found.getId(), found);
+            }
         }
+        return new LinkedHashSet<>(ids).stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 
-        if (memberSearchCondition.getAgeLoe() != null) {
-            builder.and(member.age.loe(memberSearchCondition.getAgeLoe()));
+    /**
+     * username 목록을 IN 쿼리로 한 번에 조회한다. username 은 유일하지 않으므로 요청한 username 순서, 같은 username 안에서는 id 순이다.
+     */
+    @Transactional(readOnly = true)
+    public List<Member> findAllByUsernames(Collection<String> usernames) {
+        Map<String, List<Member>> byUsername = new HashMap<>();
+        for (List<String> chunk : InListChunks.of(usernames)) {
+            List<Member> found = jpaQueryFactory
+                    .selectFrom(member)
+                    .where(member.username.in(chunk))
+                    .orderBy(member.id.asc())
+                    .fetch();
+            for (Member m : found) {
+                byUsername.computeIfAbsent(m.getUsername(), username -> new ArrayList<>()).add(m);
+            }
         }
+        return new LinkedHashSet<>(usernames).stream()
+                .flatMap(username -> byUsername.getOrDefault(username, Collections.emptyList()).stream())
+                .collect(Collectors.toList());
+    }
 
-        return jpaQueryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(builder)
-                .fetch();
+    // 조건 모양별로 Querydsl BooleanBuilder 로 한 번 만들어 둔 JPQL 에 값만 바인딩한다 (MemberSearchQueries)
+    @Transactional(readOnly = true)
+    public List<MemberTeamDto> searchByBuilder(MemberSearchCondition memberSearchCondition) {
+        return search(memberSearchCondition);
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition searchCondition) {
-        return jpaQueryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        userNameEq(searchCondition.getUsername()),
-                        teamNameEq(searchCondition.getTeamName()),
-                        ageGoe(searchCondition.getAgeGoe()),
-                        ageLoe(searchCondition.getAgeLoe()))
-                .fetch();
+        MemberSearchKey key = MemberSearchKey.of(searchCondition);
+        return MemberSearchQueries.search(entityManager, key, teamNameDictionary.snapshot(),
+                usernameIndex.find(key.getUsername(), key.getUsernameMatch()));
     }
 
+    @Transactional(readOnly = true)
     public List<Member> searchEntity(MemberSearchCondition searchCondition) {
-        return jpaQueryFactory
+        return searchEntity(searchCondition, MemberFetchPlan.MEMBER);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Member> searchEntity(MemberSearchCondition searchCondition, MemberFetchPlan fetchPlan) {
+        JPAQuery<Member> query = jpaQueryFactory
                 .selectFrom(member)
-                .leftJoin(member.team, team)
+                .leftJoin(member.team, team);
+        if (fetchPlan != MemberFetchPlan.MEMBER) {
+            query.fetchJoin();
+        }
+
+        List<Member> members = query
                 .where(
-                        userNameEq(searchCondition.getUsername()),
+                        userNameMatches(searchCondition.getUsername(), searchCondition.getUsernameMatch()),
                         teamNameEq(searchCondition.getTeamName()),
                         ageGoe(searchCondition.getAgeGoe()),
                         ageLoe(searchCondition.getAgeLoe()))
                 .fetch();
+
+        if (fetchPlan == MemberFetchPlan.TEAM_MEMBERS) {
+            // 컬렉션 하나를 초기화하면 default_batch_fetch_size 만큼 다른 팀의 memberList 도 IN 쿼리로 같이 로딩된다.
+            members.stream()
+                    .map(Member::getTeam)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .forEach(t -> Hibernate.initialize(t.getMemberList()));
+        }
+        return members;
     }
 
     private BooleanExpression ageBetween(int ageLoe, int ageGoe) {
@@ -129,7 +172,16 @@ public class MemberJpaRepository {
         return StringUtils.hasText(teamName) ? team.name.eq(teamName) : null;
     }
 
-    private BooleanExpression userNameEq(String username) {
-        return StringUtils.hasText(username) ? member.username.eq(username) : null;
+    private BooleanExpression userNameMatches(String username, UsernameMatch usernameMatch) {
+        if (!StringUtils.hasText(username)) {
+            return null;
+        }
+        if (usernameMatch == UsernameMatch.PREFIX) {
+            return member.username.startsWith(username);
+        }
+        if (usernameMatch == UsernameMatch.CONTAINS) {
+            return member.username.contains(username);
+        }
+        return member.username.eq(username);
     }
 }
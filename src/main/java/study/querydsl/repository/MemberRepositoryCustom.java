@@ -1,7 +1,10 @@
 package study.querydsl.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.CountedPage;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 
@@ -13,4 +16,13 @@ public interface MemberRepositoryCustom {
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
 
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+
+    // approximateCount 면 캐시에 남은 (만료된) count 나 추정치를 쓰고 totalExact=false 로 알려준다.
+    CountedPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, boolean approximateCount);
+
+    // offset 대신 마지막 member.id 기준으로 다음 페이지 조회 (cursor 가 null 이면 첫 페이지)
+    MemberCursorPage searchAfter(MemberSearchCondition condition, String cursor, int size);
+
+    // List 로 모으지 않고 forward-only 커서로 한 건씩 읽는다. (member.id 순) 트랜잭션 안에서 사용하고 반드시 close 해야 함
+    CloseableIterator<MemberTeamDto> searchIterate(MemberSearchCondition condition, int fetchSize);
 }
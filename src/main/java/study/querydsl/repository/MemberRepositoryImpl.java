@@ -1,114 +1,359 @@
 package study.querydsl.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.QueryResults;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import study.querydsl.dto.CountedPage;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.support.ParallelQueryExecutor;
 
 import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberTeamView.memberTeamView;
 import static study.querydsl.entity.QTeam.team;
 
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    private final EntityManager entityManager;
     private final JPAQueryFactory queryFactory;
+    private final MemberCountCache countCache;
+    private final MemberSearchCache searchCache;
+    private final ParallelQueryExecutor parallelQueryExecutor;
+    private final TeamNameDictionary teamNameDictionary;
+    private final MemberTeamReadModel readModel;
+    private final UsernameIndex usernameIndex;
+    private final MemberSnapshot memberSnapshot;
+    private final MemberAgeIndex ageIndex;
 
-    public MemberRepositoryImpl(EntityManager entityManager) {
+    public MemberRepositoryImpl(EntityManager entityManager,
+                                MemberCountCache countCache,
+                                MemberSearchCache searchCache,
+                                ParallelQueryExecutor parallelQueryExecutor,
+                                TeamNameDictionary teamNameDictionary,
+                                MemberTeamReadModel readModel,
+                                UsernameIndex usernameIndex,
+                                MemberSnapshot memberSnapshot,
+                                MemberAgeIndex ageIndex) {
+        this.entityManager = entityManager;
         this.queryFactory = new JPAQueryFactory(entityManager);
+        this.countCache = countCache;
+        this.searchCache = searchCache;
+        this.parallelQueryExecutor = parallelQueryExecutor;
+        this.teamNameDictionary = teamNameDictionary;
+        this.readModel = readModel;
+        this.usernameIndex = usernameIndex;
+        this.memberSnapshot = memberSnapshot;
+        this.ageIndex = ageIndex;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        userNameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .fetch();
+        return searchCache.get(MemberSearchKey.of(condition), key -> fetchSearch(condition));
+    }
 
+    private List<MemberTeamDto> fetchSearch(MemberSearchCondition condition) {
+        // 컬럼 스냅샷을 쓸 수 있으면 DB 에 가지 않는다
+        List<MemberTeamDto> fromSnapshot = memberSnapshot.search(MemberSearchKey.of(condition));
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
+        List<Long> usernameIds = usernameIds(condition);
+        if (readModel.isReadable()) {
+            return readModelQuery(condition, usernameIds).fetch();
+        }
+        return MemberSearchQueries.search(entityManager, MemberSearchKey.of(condition),
+                teamNameDictionary.snapshot(), usernameIds);
+    }
+
+    // PREFIX/CONTAINS 검색이면 UsernameIndex 후보 id (답할 수 없으면 null -> like)
+    private List<Long> usernameIds(MemberSearchCondition condition) {
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        return usernameIndex.find(key.getUsername(), key.getUsernameMatch());
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        userNameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+        boolean fromReadModel = readModel.isReadable();
+        TeamNameDictionary.Snapshot teams = fromReadModel ? null : teamNameDictionary.snapshot();
+        List<Long> usernameIds = usernameIds(condition);
+        QueryResults<MemberTeamDto> results = contentQuery(condition, fromReadModel, teams, usernameIds)
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetchResults();
 
-        List<MemberTeamDto> contents = results.getResults();
+        List<MemberTeamDto> contents = fillTeamNames(results.getResults(), teams);
         long total = results.getTotal();
         return new PageImpl<>(contents, pageable, total);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> contents = queryFactory
+        return searchPageComplex(condition, pageable, false);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CountedPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, boolean approximateCount) {
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        boolean fromReadModel = readModel.isReadable();
+        TeamNameDictionary.Snapshot teams = fromReadModel ? null : teamNameDictionary.snapshot();
+        List<Long> usernameIds = usernameIds(condition);
+        JPAQuery<?> countQuery = countQuery(condition, fromReadModel, teams, usernameIds);
+        // age/teamName 만 있는 조건은 나이 인덱스 BitSet 으로 센다. (count 쿼리 없음)
+        Long indexedCount = ageIndex.count(key, teams != null ? teams : teamNameDictionary.snapshot());
+
+        // 캐시에 없는 count 는 content 쿼리와 동시에 다른 커넥션에서 실행한다. (풀이 꽉 차면 null -> 아래에서 순차 실행)
+        Future<Long> parallelCount = indexedCount != null || approximateCount || countCache.hasFresh(key)
+                ? null
+                : parallelQueryExecutor.trySubmit(() -> countCache.count(key, countQuery::fetchCount));
+
+        List<MemberTeamDto> contents = fillTeamNames(contentQuery(condition, fromReadModel, teams, usernameIds)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch(), teams);
+
+        // PageableExecutionUtils 와 같은 규칙. 마지막 페이지면 count 쿼리가 필요 없다.
+        // 이미 실행 중인 count 는 취소하지 않고 끝나면 캐시에 남게 둔다.
+        if (isLastPage(contents, pageable)) {
+            return new CountedPage<>(contents, pageable, pageable.getOffset() + contents.size(), true);
+        }
+
+        if (indexedCount != null) {
+            return new CountedPage<>(contents, pageable, indexedCount, true);
+        }
+
+        if (parallelCount != null) {
+            return new CountedPage<>(contents, pageable, ParallelQueryExecutor.join(parallelCount), true);
+        }
+
+        if (approximateCount) {
+            MemberCountCache.CountEntry cached = countCache.peek(key);
+            if (cached != null) {
+                return new CountedPage<>(contents, pageable, cached.getCount(), countCache.isFresh(cached));
+            }
+            if (key.isEmpty()) {
+                return new CountedPage<>(contents, pageable, estimateMemberRows(), false);
+            }
+        }
+
+        long total = countCache.count(key, countQuery::fetchCount);
+        return new CountedPage<>(contents, pageable, total, true);
+    }
+
+    // 읽기 모델을 쓰면 member_team_view 한 테이블에서 끝난다.
+    // 아니면 팀 사전이 있을 때 team 조인 없이 member.team_id 로 거르고, 팀 이름은 조회 후 사전에서 채운다.
+    private JPAQuery<MemberTeamDto> contentQuery(MemberSearchCondition condition, boolean fromReadModel,
+                                                 TeamNameDictionary.Snapshot teams, List<Long> usernameIds) {
+        if (fromReadModel) {
+            return readModelQuery(condition, usernameIds);
+        }
+        if (teams == null) {
+            return queryFactory
+                    .select(new QMemberTeamDto(
+                            member.id.as("memberId"),
+                            member.username,
+                            member.age,
+                            team.id.as("teamId"),
+                            team.name.as("teamName")
+                    ))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(
+                            userNameMatches(condition, usernameIds),
+                            teamNameEq(condition.getTeamName()),
+                            ageGoe(condition.getAgeGoe()),
+                            ageLoe(condition.getAgeLoe()));
+        }
+        return queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
                         member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
+                        member.team.id.as("teamId")
                 ))
                 .from(member)
-                .leftJoin(member.team, team)
                 .where(
-                        userNameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
+                        userNameMatches(condition, usernameIds),
+                        teamIdIn(condition.getTeamName(), teams),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
+                        ageLoe(condition.getAgeLoe()));
+    }
 
+    private JPAQuery<MemberTeamDto> readModelQuery(MemberSearchCondition condition, List<Long> usernameIds) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        memberTeamView.memberId,
+                        memberTeamView.username,
+                        memberTeamView.age,
+                        memberTeamView.teamId,
+                        memberTeamView.teamName
+                ))
+                .from(memberTeamView)
+                .where(readModelWhere(condition, usernameIds));
+    }
 
-        JPAQuery<Member> countQuery = queryFactory
+    private JPAQuery<?> countQuery(MemberSearchCondition condition, boolean fromReadModel,
+                                   TeamNameDictionary.Snapshot teams, List<Long> usernameIds) {
+        if (fromReadModel) {
+            return queryFactory
+                    .select(memberTeamView.memberId)
+                    .from(memberTeamView)
+                    .where(readModelWhere(condition, usernameIds));
+        }
+        JPAQuery<Member> query = queryFactory
                 .select(member)
-                .from(member)
-//                .leftJoin(member.team, team)  얘는 카운트에 필요없다.
-                .where(
-                        userNameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()));
+                .from(member);
+        if (teams == null && StringUtils.hasText(condition.getTeamName())) {
+            // 팀 이름으로 거를 때만 조인이 필요하다.
+            query.join(member.team, team);
+        }
+        return query.where(
+                userNameMatches(condition, usernameIds),
+                teams == null ? teamNameEq(condition.getTeamName()) : teamIdIn(condition.getTeamName(), teams),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe()));
+    }
+
+    private static List<MemberTeamDto> fillTeamNames(List<MemberTeamDto> contents, TeamNameDictionary.Snapshot teams) {
+        return teams == null ? contents : teams.fillTeamNames(contents);
+    }
+
+    private static boolean isLastPage(List<?> contents, Pageable pageable) {
+        if (pageable.getOffset() == 0) {
+            return pageable.getPageSize() > contents.size();
+        }
+        return !contents.isEmpty() && pageable.getPageSize() > contents.size();
+    }
+
+    // 조건이 없을 때는 H2 통계의 추정 row 수를 그대로 쓴다. (count(*) 풀스캔 회피)
+    private long estimateMemberRows() {
+        Object estimate = entityManager
+                .createNativeQuery("select row_count_estimate from information_schema.tables"
+                        + " where table_schema = 'PUBLIC' and table_name = 'MEMBER'")
+                .getSingleResult();
+        return ((Number) estimate).longValue();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MemberCursorPage searchAfter(MemberSearchCondition condition, String cursor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be greater than 0");
+        }
+
+        // size + 1 개를 가져와서 다음 페이지 존재 여부를 판단한다. (count 쿼리 없음)
+        boolean fromReadModel = readModel.isReadable();
+        TeamNameDictionary.Snapshot teams = fromReadModel ? null : teamNameDictionary.snapshot();
+        List<Long> usernameIds = usernameIds(condition);
+        NumberPath<Long> memberId = fromReadModel ? memberTeamView.memberId : member.id;
+        List<MemberTeamDto> contents = fillTeamNames(contentQuery(condition, fromReadModel, teams, usernameIds)
+                .where(memberIdGt(memberId, decodeCursor(cursor)))
+                .orderBy(memberId.asc())
+                .limit(size + 1)
+                .fetch(), teams);
+
+        if (contents.size() <= size) {
+            return new MemberCursorPage(contents, null);
+        }
+
+        List<MemberTeamDto> page = contents.subList(0, size);
+        return new MemberCursorPage(page, encodeCursor(page.get(size - 1).getMemberId()));
+    }
 
-        return PageableExecutionUtils.getPage(contents, pageable, countQuery::fetchCount);
-//        return new PageImpl<>(contents, pageable, count);
+    // 반환한 iterator 가 커넥션을 물고 있으므로 트랜잭션은 호출하는 쪽(MemberExportService)에서 연다.
+    @Override
+    public CloseableIterator<MemberTeamDto> searchIterate(MemberSearchCondition condition, int fetchSize) {
+        // Hibernate 에서는 iterate() 가 ScrollableResults(FORWARD_ONLY) 로 동작한다.
+        // DTO 프로젝션이라 영속성 컨텍스트에도 쌓이지 않음
+        boolean fromReadModel = readModel.isReadable();
+        TeamNameDictionary.Snapshot teams = fromReadModel ? null : teamNameDictionary.snapshot();
+        List<Long> usernameIds = usernameIds(condition);
+        // PK 순서라 정렬 비용 없이 내보낼 때마다 같은 순서가 된다
+        NumberPath<Long> memberId = fromReadModel ? memberTeamView.memberId : member.id;
+        CloseableIterator<MemberTeamDto> iterator = contentQuery(condition, fromReadModel, teams, usernameIds)
+                .orderBy(memberId.asc())
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .iterate();
+        return teams == null ? iterator : new TeamNameFillingIterator(iterator, teams);
+    }
+
+    private static class TeamNameFillingIterator implements CloseableIterator<MemberTeamDto> {
+
+        private final CloseableIterator<MemberTeamDto> delegate;
+        private final TeamNameDictionary.Snapshot teams;
+
+        TeamNameFillingIterator(CloseableIterator<MemberTeamDto> delegate, TeamNameDictionary.Snapshot teams) {
+            this.delegate = delegate;
+            this.teams = teams;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public MemberTeamDto next() {
+            return teams.fillTeamName(delegate.next());
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+
+    private static String encodeCursor(Long lastMemberId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(lastMemberId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Long decodeCursor(String cursor) {
+        if (!StringUtils.hasText(cursor)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+        }
+    }
+
+    private BooleanExpression memberIdGt(NumberPath<Long> memberId, Long lastMemberId) {
+        return lastMemberId != null ? memberId.gt(lastMemberId) : null;
+    }
+
+    private static BooleanExpression[] readModelWhere(MemberSearchCondition condition, List<Long> usernameIds) {
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        return new BooleanExpression[]{
+                usernameMatches(memberTeamView.username, memberTeamView.memberId, key, usernameIds),
+                key.getTeamName() != null ? memberTeamView.teamName.eq(key.getTeamName()) : null,
+                key.getAgeGoe() != null ? memberTeamView.age.goe(key.getAgeGoe()) : null,
+                key.getAgeLoe() != null ? memberTeamView.age.loe(key.getAgeLoe()) : null
+        };
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
@@ -123,7 +368,31 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
         return StringUtils.hasText(teamName) ? team.name.eq(teamName) : null;
     }
 
-    private BooleanExpression userNameEq(String username) {
-        return StringUtils.hasText(username) ? member.username.eq(username) : null;
+    // 이름이 없는 팀이면 빈 IN -> Querydsl 이 1 = 2 로 만든다
+    private BooleanExpression teamIdIn(String teamName, TeamNameDictionary.Snapshot teams) {
+        return StringUtils.hasText(teamName) ? member.team.id.in(teams.idsOf(teamName)) : null;
+    }
+
+    private static BooleanExpression userNameMatches(MemberSearchCondition condition, List<Long> usernameIds) {
+        return usernameMatches(member.username, member.id, MemberSearchKey.of(condition), usernameIds);
+    }
+
+    // 후보 id 가 있으면 id 로 거른다. (빈 IN -> 1 = 2) 없으면 DB 에서 비교
+    private static BooleanExpression usernameMatches(StringPath username, NumberPath<Long> id, MemberSearchKey key,
+                                                     List<Long> usernameIds) {
+        if (key.getUsername() == null) {
+            return null;
+        }
+        if (usernameIds != null) {
+            return id.in(InListChunks.single(usernameIds));
+        }
+        switch (key.getUsernameMatch()) {
+            case PREFIX:
+                return username.startsWith(key.getUsername());
+            case CONTAINS:
+                return username.contains(key.getUsername());
+            default:
+                return username.eq(key.getUsername());
+        }
     }
 }
@@ -0,0 +1,117 @@
+package study.querydsl.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import study.querydsl.datasource.ReplicaRoutingDataSource;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.support.EntityWriteTracker;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * MemberRepositoryImpl.search 결과 캐시. (Caffeine, W-TinyLFU 로 maximumSize 만큼만 유지)
+ * 엔티티 변경, 벌크 update/delete 모두 EntityChangeEvent 로 들어오고 트랜잭션이 끝나면 전부 비운다.
+ * 무효화 전에 읽기 시작한 조회가 옛 결과를 저장하지 않도록 세대 번호로 확인한다. (TeamNameDictionary 와 같은 방식)
+ * 캐시 미스도 호출한 트랜잭션의 라우팅을 그대로 따른다. replica 에서 읽은 결과는 replica 지연 허용치(max-lag)까지만 둔다.
+ * (그보다 뒤처진 replica 는 읽기 대상에서 빠지므로, 무효화 이후 옛 값이 max-lag 넘게 남지 않는다)
+ */
+@Component
+public class MemberSearchCache {
+
+    private final Cache<MemberSearchKey, Entry> cache;
+    private final long ttlNanos;
+    private final long replicaTtlNanos;
+    private final boolean enabled;
+    private final EntityWriteTracker writeTracker;
+    private final AtomicLong generation = new AtomicLong();
+
+    public MemberSearchCache(@Value("${member.search.result-cache.enabled:true}") boolean enabled,
+                             @Value("${member.search.result-cache.maximum-size:1000}") long maximumSize,
+                             @Value("${member.search.result-cache.ttl:10m}") Duration ttl,
+                             @Value("${member.datasource.max-lag:5s}") Duration replicaMaxLag,
+                             EntityWriteTracker writeTracker) {
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.replicaTtlNanos = Math.min(ttl.toNanos(), replicaMaxLag.toNanos());
+        this.writeTracker = writeTracker;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new EntryExpiry())
+                .recordStats()
+                .build();
+    }
+
+    public List<MemberTeamDto> get(MemberSearchKey key, Function<MemberSearchKey, List<MemberTeamDto>> loader) {
+        // 커밋 전 변경이 있는 트랜잭션의 결과는 다른 요청에 보여주면 안 된다.
+        if (!enabled || writeTracker.hasPendingWrites()) {
+            return loader.apply(key);
+        }
+        Entry cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached.contents;
+        }
+
+        long loadingGeneration = generation.get();
+        List<MemberTeamDto> result = Collections.unmodifiableList(loader.apply(key));
+        if (generation.get() == loadingGeneration) {
+            Entry entry = new Entry(result, ReplicaRoutingDataSource.isReadingReplica() ? replicaTtlNanos : ttlNanos);
+            cache.put(key, entry);
+            // 저장하는 사이에 무효화가 끝났으면 방금 넣은 값을 다시 뺀다
+            if (generation.get() != loadingGeneration) {
+                cache.asMap().remove(key, entry);
+            }
+        }
+        return result;
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        if (event.isMember() || event.isTeam()) {
+            invalidateAll();
+        }
+    }
+
+    private static final class Entry {
+        private final List<MemberTeamDto> contents;
+        private final long ttlNanos;
+
+        private Entry(List<MemberTeamDto> contents, long ttlNanos) {
+            this.contents = contents;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+
+    // 항목마다 저장할 때 정한 TTL (expireAfterWrite 와 같이 읽어도 늘어나지 않는다)
+    private static final class EntryExpiry implements Expiry<MemberSearchKey, Entry> {
+
+        @Override
+        public long expireAfterCreate(MemberSearchKey key, Entry entry, long currentTime) {
+            return entry.ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(MemberSearchKey key, Entry entry, long currentTime, long currentDuration) {
+            return entry.ttlNanos;
+        }
+
+        @Override
+        public long expireAfterRead(MemberSearchKey key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
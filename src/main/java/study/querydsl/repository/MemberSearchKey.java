@@ -0,0 +1,35 @@
+package study.querydsl.repository;
+
+import lombok.Value;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UsernameMatch;
+
+// 검색 조건을 캐시 키로 쓰기 위해 정규화 (빈 문자열 == 조건 없음)
+@Value
+public class MemberSearchKey {
+    String username;
+    UsernameMatch usernameMatch;
+    String teamName;
+    Integer ageGoe;
+    Integer ageLoe;
+
+    public static MemberSearchKey of(MemberSearchCondition condition) {
+        String username = normalize(condition.getUsername());
+        return new MemberSearchKey(
+                username,
+                username == null || condition.getUsernameMatch() == null
+                        ? UsernameMatch.EXACT : condition.getUsernameMatch(),
+                normalize(condition.getTeamName()),
+                condition.getAgeGoe(),
+                condition.getAgeLoe());
+    }
+
+    public boolean isEmpty() {
+        return username == null && teamName == null && ageGoe == null && ageLoe == null;
+    }
+
+    private static String normalize(String value) {
+        return StringUtils.hasText(value) ? value : null;
+    }
+}
@@ -0,0 +1,191 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * search/searchByBuilder 용 쿼리 템플릿.
+ * 조건이 있냐 없냐(+ username 비교 방식, 팀 사전 사용 여부)로 정해지는 모양(shape)마다 Querydsl BooleanBuilder 로
+ * 조건을 한 번 조립하고 JPQL 로 한 번 직렬화해 둔다. 값 자리는 Param 이라 호출 때는 값만 바인딩한다.
+ * JPQL 문자열이 같으니 Hibernate QueryPlanCache 에서도 파싱 결과를 재사용한다.
+ */
+final class MemberSearchQueries {
+
+    private static final int USERNAME_EQ = 1;
+    private static final int USERNAME_LIKE = 1 << 1;
+    private static final int USERNAME_ID_IN = 1 << 2;
+    private static final int TEAM_NAME = 1 << 3;
+    private static final int TEAM_ID_IN = 1 << 4;
+    private static final int AGE_GOE = 1 << 5;
+    private static final int AGE_LOE = 1 << 6;
+
+    private static final Param<String> USERNAME_PARAM = new Param<>(String.class, "username");
+    @SuppressWarnings("rawtypes")
+    private static final Param<Collection> MEMBER_IDS_PARAM = new Param<>(Collection.class, "memberIds");
+    private static final Param<String> TEAM_NAME_PARAM = new Param<>(String.class, "teamName");
+    @SuppressWarnings("rawtypes")
+    private static final Param<Collection> TEAM_IDS_PARAM = new Param<>(Collection.class, "teamIds");
+    private static final Param<Integer> AGE_GOE_PARAM = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE_PARAM = new Param<>(Integer.class, "ageLoe");
+
+    private static final ConcurrentMap<Integer, Template> TEMPLATES = new ConcurrentHashMap<>();
+
+    private MemberSearchQueries() {
+    }
+
+    /**
+     * @param teams    팀 사전. 있으면 team 조인 없이 member.team_id 로 거르고 팀 이름은 사전에서 채운다.
+     * @param memberIds UsernameIndex 가 찾은 후보 id. null 이면 username 을 DB 에서 비교한다.
+     */
+    static List<MemberTeamDto> search(EntityManager entityManager, MemberSearchKey key,
+                                      TeamNameDictionary.Snapshot teams, List<Long> memberIds) {
+        int shape = shapeOf(key, teams != null, memberIds != null);
+        Map<ParamExpression<?>, Object> params = new HashMap<>();
+
+        if ((shape & USERNAME_ID_IN) != 0) {
+            if (memberIds.isEmpty()) {
+                return Collections.emptyList();
+            }
+            params.put(MEMBER_IDS_PARAM, InListChunks.single(memberIds));
+        } else if ((shape & USERNAME_LIKE) != 0) {
+            params.put(USERNAME_PARAM, likePattern(key.getUsername(), key.getUsernameMatch()));
+        } else if ((shape & USERNAME_EQ) != 0) {
+            params.put(USERNAME_PARAM, key.getUsername());
+        }
+        if ((shape & TEAM_ID_IN) != 0) {
+            List<Long> teamIds = teams.idsOf(key.getTeamName());
+            if (teamIds.isEmpty()) {
+                return Collections.emptyList();
+            }
+            params.put(TEAM_IDS_PARAM, teamIds);
+        } else if ((shape & TEAM_NAME) != 0) {
+            params.put(TEAM_NAME_PARAM, key.getTeamName());
+        }
+        if ((shape & AGE_GOE) != 0) {
+            params.put(AGE_GOE_PARAM, key.getAgeGoe());
+        }
+        if ((shape & AGE_LOE) != 0) {
+            params.put(AGE_LOE_PARAM, key.getAgeLoe());
+        }
+
+        Template template = template(shape, teams != null);
+        Query query = entityManager.createQuery(template.jpql);
+        JPAUtil.setConstants(query, template.constantToLabel, params);
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+
+        List<MemberTeamDto> contents = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            contents.add(teams != null
+                    ? new MemberTeamDto((Long) row[0], (String) row[1], (Integer) row[2], (Long) row[3])
+                    : new MemberTeamDto((Long) row[0], (String) row[1], (Integer) row[2], (Long) row[3], (String) row[4]));
+        }
+        return teams != null ? teams.fillTeamNames(contents) : contents;
+    }
+
+    static String jpql(MemberSearchKey key, boolean withDictionary, boolean withMemberIds) {
+        return template(shapeOf(key, withDictionary, withMemberIds), withDictionary).jpql;
+    }
+
+    static int shapeOf(MemberSearchKey key, boolean withDictionary, boolean withMemberIds) {
+        int shape = 0;
+        if (key.getUsername() != null) {
+            if (key.getUsernameMatch() == UsernameMatch.EXACT) {
+                shape |= USERNAME_EQ;
+            } else {
+                shape |= withMemberIds ? USERNAME_ID_IN : USERNAME_LIKE;
+            }
+        }
+        if (key.getTeamName() != null) {
+            shape |= withDictionary ? TEAM_ID_IN : TEAM_NAME;
+        }
+        if (key.getAgeGoe() != null) {
+            shape |= AGE_GOE;
+        }
+        if (key.getAgeLoe() != null) {
+            shape |= AGE_LOE;
+        }
+        return shape;
+    }
+
+    // Querydsl startsWith/contains 와 같은 escape 문자
+    static String likePattern(String username, UsernameMatch match) {
+        String escaped = username.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        return match == UsernameMatch.PREFIX ? escaped + "%" : "%" + escaped + "%";
+    }
+
+    // 사전 사용 여부가 다르면 select 절도 다르다 (조건에 팀이 없어도)
+    private static Template template(int shape, boolean withDictionary) {
+        return TEMPLATES.computeIfAbsent(withDictionary ? shape | 1 << 7 : shape,
+                k -> buildTemplate(shape, withDictionary));
+    }
+
+    private static Template buildTemplate(int shape, boolean withDictionary) {
+        BooleanBuilder builder = new BooleanBuilder();
+        if ((shape & USERNAME_EQ) != 0) {
+            builder.and(member.username.eq(USERNAME_PARAM));
+        }
+        if ((shape & USERNAME_LIKE) != 0) {
+            builder.and(member.username.like(USERNAME_PARAM, '!'));
+        }
+        if ((shape & USERNAME_ID_IN) != 0) {
+            builder.and(Expressions.booleanOperation(Ops.IN, member.id, MEMBER_IDS_PARAM));
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            builder.and(team.name.eq(TEAM_NAME_PARAM));
+        }
+        if ((shape & TEAM_ID_IN) != 0) {
+            // m.team.id 는 FK 컬럼을 그대로 읽으므로 조인이 생기지 않는다
+            builder.and(Expressions.booleanOperation(Ops.IN, member.team.id, TEAM_IDS_PARAM));
+        }
+        if ((shape & AGE_GOE) != 0) {
+            builder.and(member.age.goe(AGE_GOE_PARAM));
+        }
+        if ((shape & AGE_LOE) != 0) {
+            builder.and(member.age.loe(AGE_LOE_PARAM));
+        }
+
+        JPAQuery<?> query = withDictionary
+                ? new JPAQuery<Void>().select(member.id, member.username, member.age, member.team.id).from(member)
+                : new JPAQuery<Void>().select(member.id, member.username, member.age, team.id, team.name)
+                        .from(member).leftJoin(member.team, team);
+        query.where(builder);
+
+        JPQLSerializer serializer = new JPQLSerializer(HQLTemplates.DEFAULT);
+        serializer.serialize(query.getMetadata(), false, null);
+        return new Template(serializer.toString(), new HashMap<>(serializer.getConstantToLabel()));
+    }
+
+    private static final class Template {
+        private final String jpql;
+        private final Map<Object, String> constantToLabel;
+
+        private Template(String jpql, Map<Object, String> constantToLabel) {
+            this.jpql = jpql;
+            this.constantToLabel = constantToLabel;
+        }
+    }
+}
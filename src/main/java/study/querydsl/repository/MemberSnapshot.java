@@ -0,0 +1,371 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.datasource.RebuildTransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.EntityWriteTracker;
+import study.querydsl.support.LongIntHashMap;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * search(MemberSearchCondition) 를 DB 대신 메모리의 컬럼 스냅샷에서 처리한다.
+ * id/age 와 username/team 사전 코드는 힙 밖 컬럼(MemberColumns)에 두고, 문자열은 사전에 한 번씩만 둔다.
+ * 검색은 age 범위 -> 코드 비교 순으로 int 컬럼을 훑는다. (문자열 비교 없음)
+ * 커밋된 Member/Team 변경을 행 단위로 반영하고, 벌크 연산이 커밋되면 백그라운드에서 다시 읽는다.
+ * 다시 읽는 동안에는 null 을 돌려준다. (요청 스레드에서 전체를 읽지 않는다)
+ */
+@Slf4j
+@Component
+public class MemberSnapshot {
+
+    private final EntityManager entityManager;
+    private final EntityWriteTracker writeTracker;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final int maximumRows;
+    private final ExecutorService loader;
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+
+    private volatile State current;
+
+    public MemberSnapshot(EntityManager entityManager,
+                          EntityWriteTracker writeTracker,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${member.search.snapshot.enabled:false}") boolean enabled,
+                          @Value("${member.search.snapshot.maximum-rows:10000000}") int maximumRows) {
+        this.entityManager = entityManager;
+        this.writeTracker = writeTracker;
+        this.readOnlyTransaction = new RebuildTransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maximumRows = maximumRows;
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-snapshot-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return 검색 결과 (memberId 순). 꺼져 있거나, 로딩 전이거나, 커밋 전 변경이 있거나, 행이 너무 많으면 null (DB 에서 조회할 것)
+     */
+    public List<MemberTeamDto> search(MemberSearchKey key) {
+        if (!enabled || writeTracker.hasPendingWrites()) {
+            return null;
+        }
+        State state = current;
+        return state != null && state.ready && !state.overflow ? state.search(key) : null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            reload();
+        }
+    }
+
+    /**
+     * 지금 스냅샷을 버리고 백그라운드에서 다시 읽는다. 이미 대기 중인 재로딩이 있으면 그것으로 합친다.
+     */
+    public void reload() {
+        current = null;
+        if (reloadQueued.compareAndSet(false, true)) {
+            loader.execute(() -> {
+                reloadQueued.set(false);
+                try {
+                    load();
+                } catch (RuntimeException e) {
+                    log.warn("member snapshot load failed, searching the database until the next reload", e);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        State state = current;
+        if (!enabled || state == null || !(event.isMember() || event.isTeam())) {
+            return;
+        }
+        if (event.getType() == EntityChangeEvent.Type.BULK) {
+            reload();
+            return;
+        }
+
+        if (event.isTeam()) {
+            Team team = (Team) event.getEntity();
+            if (event.getType() != EntityChangeEvent.Type.REMOVE) {
+                state.putTeam(team.getId(), team.getName(), true);
+            }
+        } else if (event.getType() == EntityChangeEvent.Type.REMOVE) {
+            state.removeMember(((Member) event.getEntity()).getId());
+        } else if (!state.putMember((Member) event.getEntity())) {
+            reload();
+        }
+    }
+
+    /**
+     * 전체를 지금 스레드에서 다시 읽는다. 읽는 동안 커밋된 변경은 새 스냅샷에 바로 반영되고, 그 행은 덮어쓰지 않는다.
+     */
+    public synchronized void load() {
+        State state = new State();
+        current = state;
+        readOnlyTransaction.execute(status -> {
+            ScrollableResults rows = entityManager.unwrap(Session.class)
+                    .createQuery("select m.id, m.username, m.age, t.id, t.name from Member m left join m.team t")
+                    .setReadOnly(true)
+                    .setFetchSize(1000)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (rows.next() && !state.overflow) {
+                    state.load((Long) rows.get(0), (String) rows.get(1), (Integer) rows.get(2),
+                            (Long) rows.get(3), (String) rows.get(4), maximumRows);
+                }
+            } finally {
+                rows.close();
+            }
+            return null;
+        });
+        state.ready = true;
+        if (state.overflow) {
+            log.info("member snapshot disabled: more than {} members", maximumRows);
+        } else {
+            log.debug("member snapshot loaded: {} members, {} off-heap bytes", state.columns.size(), state.columns.offHeapBytes());
+        }
+    }
+
+    private static final class State {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final MemberColumns columns = new MemberColumns(1024);
+        private final LongIntHashMap rowById = new LongIntHashMap(1024);
+
+        // username 사전. 바뀐 이름의 옛 코드는 다시 읽을 때까지 남는다.
+        private final Map<String, Integer> usernameCodes = new HashMap<>();
+        private final List<String> usernames = new ArrayList<>();
+
+        // team 사전 (팀 이름은 유일하지 않다)
+        private final LongIntHashMap teamCodeById = new LongIntHashMap();
+        private final List<Long> teamIds = new ArrayList<>();
+        private final List<String> teamNames = new ArrayList<>();
+
+        // 로딩 중에 이벤트로 반영된 회원/팀. 로딩 쿼리의 (더 오래된) 행으로 덮어쓰지 않는다.
+        private final Set<Long> changedMembersWhileLoading = new HashSet<>();
+        private final Set<Long> changedTeamsWhileLoading = new HashSet<>();
+
+        private volatile boolean ready;
+        private volatile boolean overflow;
+
+        private void load(Long id, String username, Integer age, Long teamId, String teamName, int maximumRows) {
+            lock.writeLock().lock();
+            try {
+                if (changedMembersWhileLoading.contains(id)) {
+                    return;
+                }
+                if (columns.size() >= maximumRows) {
+                    overflow = true;
+                    return;
+                }
+                int teamCode = teamId == null ? MemberColumns.NONE : putTeam(teamId, teamName, false);
+                putMember(id, username, age, teamCode);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @return 팀을 모르는데 이름을 알 수 없으면 false (다시 읽어야 한다)
+         */
+        private boolean putMember(Member member) {
+            lock.writeLock().lock();
+            try {
+                if (!ready) {
+                    changedMembersWhileLoading.add(member.getId());
+                }
+                int teamCode = MemberColumns.NONE;
+                if (member.getTeam() != null) {
+                    // 커밋 후라 프록시를 초기화하지 않는다. 같은 트랜잭션에서 만든 팀은 Team 이벤트로 먼저 들어와 있다.
+                    teamCode = teamCodeById.get(member.getTeam().getId());
+                    if (teamCode == LongIntHashMap.MISSING) {
+                        return false;
+                    }
+                }
+                putMember(member.getId(), member.getUsername(), member.getAge(), teamCode);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void putMember(long id, String username, int age, int teamCode) {
+            int usernameCode = usernameCode(username);
+            int row = rowById.get(id);
+            if (row == LongIntHashMap.MISSING) {
+                rowById.put(id, columns.append(id, age, usernameCode, teamCode));
+            } else {
+                columns.set(row, age, usernameCode, teamCode);
+            }
+        }
+
+        private void removeMember(long id) {
+            lock.writeLock().lock();
+            try {
+                if (!ready) {
+                    changedMembersWhileLoading.add(id);
+                }
+                int row = rowById.remove(id);
+                if (row != LongIntHashMap.MISSING) {
+                    long movedId = columns.remove(row);
+                    if (movedId != Long.MIN_VALUE) {
+                        rowById.put(movedId, row);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private int putTeam(long teamId, String teamName, boolean fromEvent) {
+            lock.writeLock().lock();
+            try {
+                if (fromEvent && !ready) {
+                    changedTeamsWhileLoading.add(teamId);
+                }
+                int code = teamCodeById.get(teamId);
+                if (code == LongIntHashMap.MISSING) {
+                    code = teamIds.size();
+                    teamIds.add(teamId);
+                    teamNames.add(teamName);
+                    teamCodeById.put(teamId, code);
+                } else if (fromEvent || !changedTeamsWhileLoading.contains(teamId)) {
+                    teamNames.set(code, teamName);
+                }
+                return code;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private int usernameCode(String username) {
+            if (username == null) {
+                return MemberColumns.NONE;
+            }
+            Integer code = usernameCodes.get(username);
+            if (code == null) {
+                code = usernames.size();
+                usernames.add(username);
+                usernameCodes.put(username, code);
+            }
+            return code;
+        }
+
+        private List<MemberTeamDto> search(MemberSearchKey key) {
+            lock.readLock().lock();
+            try {
+                int ageGoe = key.getAgeGoe() != null ? key.getAgeGoe() : Integer.MIN_VALUE;
+                int ageLoe = key.getAgeLoe() != null ? key.getAgeLoe() : Integer.MAX_VALUE;
+                BitSet usernameFilter = key.getUsername() != null ? matchingUsernames(key) : null;
+                BitSet teamFilter = key.getTeamName() != null ? matchingTeams(key.getTeamName()) : null;
+                if ((usernameFilter != null && usernameFilter.isEmpty()) || (teamFilter != null && teamFilter.isEmpty())) {
+                    return Collections.emptyList();
+                }
+
+                List<MemberTeamDto> result = new ArrayList<>();
+                int size = columns.size();
+                for (int row = 0; row < size; row++) {
+                    int age = columns.age(row);
+                    if (age < ageGoe || age > ageLoe) {
+                        continue;
+                    }
+                    int usernameCode = columns.usernameCode(row);
+                    if (usernameFilter != null && (usernameCode == MemberColumns.NONE || !usernameFilter.get(usernameCode))) {
+                        continue;
+                    }
+                    int teamCode = columns.teamCode(row);
+                    if (teamFilter != null && (teamCode == MemberColumns.NONE || !teamFilter.get(teamCode))) {
+                        continue;
+                    }
+                    result.add(toDto(row, age, usernameCode, teamCode));
+                }
+                result.sort(Comparator.comparing(MemberTeamDto::getMemberId));
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // EXACT 는 사전에서 바로, PREFIX/CONTAINS 는 사전(서로 다른 이름)만 훑는다
+        private BitSet matchingUsernames(MemberSearchKey key) {
+            BitSet codes = new BitSet();
+            if (key.getUsernameMatch() == UsernameMatch.EXACT) {
+                Integer code = usernameCodes.get(key.getUsername());
+                if (code != null) {
+                    codes.set(code);
+                }
+                return codes;
+            }
+            for (int code = 0; code < usernames.size(); code++) {
+                String username = usernames.get(code);
+                if (key.getUsernameMatch() == UsernameMatch.PREFIX
+                        ? username.startsWith(key.getUsername()) : username.contains(key.getUsername())) {
+                    codes.set(code);
+                }
+            }
+            return codes;
+        }
+
+        private BitSet matchingTeams(String teamName) {
+            BitSet codes = new BitSet();
+            for (int code = 0; code < teamNames.size(); code++) {
+                if (teamName.equals(teamNames.get(code))) {
+                    codes.set(code);
+                }
+            }
+            return codes;
+        }
+
+        private MemberTeamDto toDto(int row, int age, int usernameCode, int teamCode) {
+            return new MemberTeamDto(
+                    columns.id(row),
+                    usernameCode == MemberColumns.NONE ? null : usernames.get(usernameCode),
+                    age,
+                    teamCode == MemberColumns.NONE ? null : teamIds.get(teamCode),
+                    teamCode == MemberColumns.NONE ? null : teamNames.get(teamCode));
+        }
+    }
+}
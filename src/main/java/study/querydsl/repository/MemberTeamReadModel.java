@@ -0,0 +1,198 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.ActionQueue;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.EntityChangeListener;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.EntityWriteTracker;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * member_team_view(MemberTeamView) 를 Member/Team 변경에 맞춰 갱신한다.
+ * 트랜잭션 안에서 바뀐 member/team id 를 모아 두었다가 커밋 직전(마지막 플러시 이후)에 한 번에 반영하므로
+ * 원본과 읽기 모델이 같은 트랜잭션으로 커밋된다.
+ * 벌크 update/delete 는 어떤 행이 바뀌었는지 모르므로 같은 트랜잭션에서 전체를 다시 만든다.
+ * (MemberBulkOperations 의 구간 트랜잭션에서는 미루고 끝난 뒤 한 번, 트랜잭션 밖에서 온 BULK 는 새 트랜잭션에서 바로)
+ * 반영 전에 관련 팀 행을 id 순서로 select ... for update 로 잠근다. 팀 이름을 바꾸는 트랜잭션과 그 팀 회원을 바꾸는
+ * 트랜잭션이 서로의 커밋을 보지 못한 채 반영해서 옛 팀 이름이 남지 않도록 한다.
+ */
+@Slf4j
+@Component
+public class MemberTeamReadModel {
+
+    private static final Object CHANGES_KEY = MemberTeamReadModel.class.getName() + ".CHANGES";
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    private static final String INSERT_SELECT = "insert into MemberTeamView (memberId, username, age, teamId, teamName)"
+            + " select m.id, m.username, m.age, t.id, t.name from Member m left join m.team t";
+
+    private final EntityManager entityManager;
+    private final EntityWriteTracker writeTracker;
+    private final PlatformTransactionManager transactionManager;
+    private final boolean enabled;
+
+    public MemberTeamReadModel(EntityManager entityManager,
+                               EntityWriteTracker writeTracker,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${member.search.read-model.enabled:false}") boolean enabled) {
+        this.entityManager = entityManager;
+        this.writeTracker = writeTracker;
+        this.transactionManager = transactionManager;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 현재 트랜잭션에 커밋 전 변경이 있으면 읽기 모델에 아직 반영되지 않았으므로 false
+     */
+    public boolean isReadable() {
+        return enabled && !writeTracker.hasPendingWrites();
+    }
+
+    // 꺼져 있던 동안의 변경은 반영되지 않았으므로 시작할 때 한 번 다시 만든다.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (enabled) {
+            rebuildInNewTransaction();
+        }
+    }
+
+    // 플러시 중에 동기로 호출된다. 여기서는 id 만 모은다.
+    @EventListener
+    public void onEntityChange(EntityChangeEvent event) {
+        if (!enabled || !(event.isMember() || event.isTeam())) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 이미 커밋된 벌크 변경 (엔티티 단위 이벤트는 항상 트랜잭션 안에서 온다)
+            if (event.getType() == EntityChangeEvent.Type.BULK) {
+                rebuildInNewTransaction();
+            }
+            return;
+        }
+
+        if (event.getType() == EntityChangeEvent.Type.BULK) {
+            if (!EntityChangeListener.isRebuildDeferred()) {
+                currentChanges().rebuild = true;
+            }
+            return;
+        }
+        Changes changes = currentChanges();
+        if (event.isMember()) {
+            changes.memberIds.add(((Member) event.getEntity()).getId());
+        } else if (event.getType() == EntityChangeEvent.Type.UPDATE) {
+            // 팀 추가/삭제는 회원이 옮겨갈 때 회원 변경으로 반영된다. 이름 변경만 보면 된다.
+            changes.teamIds.add(((Team) event.getEntity()).getId());
+        }
+    }
+
+    // Spring 의 beforeCommit 은 커밋 시점 플러시보다 먼저 호출되므로 Hibernate 의 완료 전 처리에 건다.
+    // (세션이 플러시를 끝낸 뒤, 같은 트랜잭션 안에서 실행된다)
+    private Changes currentChanges() {
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(CHANGES_KEY);
+        if (changes == null) {
+            changes = new Changes();
+            TransactionSynchronizationManager.bindResource(CHANGES_KEY, changes);
+            ActionQueue actionQueue = entityManager.unwrap(SessionImplementor.class).getActionQueue();
+            actionQueue.registerProcess((BeforeTransactionCompletionProcess) this::apply);
+            actionQueue.registerProcess((AfterTransactionCompletionProcess) (success, session) ->
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CHANGES_KEY));
+        }
+        return changes;
+    }
+
+    private void apply(SessionImplementor session) {
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(CHANGES_KEY);
+        if (changes == null) {
+            return;
+        }
+        if (changes.rebuild) {
+            rebuild(session);
+            return;
+        }
+
+        // 회원이 지금 속한 팀 (옮기기 전 팀의 행은 memberId 로 지워지므로 잠글 필요가 없다)
+        SortedSet<Long> teamIds = new TreeSet<>(changes.teamIds);
+        for (List<Long> ids : chunks(changes.memberIds)) {
+            teamIds.addAll(session.createQuery("select distinct m.team.id from Member m"
+                    + " where m.id in :ids and m.team is not null", Long.class)
+                    .setParameter("ids", ids)
+                    .getResultList());
+        }
+        lockTeams(session, teamIds);
+
+        for (List<Long> ids : chunks(changes.memberIds)) {
+            session.createQuery("delete from MemberTeamView v where v.memberId in :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+            session.createQuery(INSERT_SELECT + " where m.id in :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+        }
+        for (List<Long> ids : chunks(changes.teamIds)) {
+            session.createQuery("update MemberTeamView v"
+                    + " set v.teamName = (select t.name from Team t where t.id = v.teamId)"
+                    + " where v.teamId in :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+        }
+    }
+
+    private void rebuildInNewTransaction() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            rebuild(entityManager);
+            return null;
+        });
+    }
+
+    private static void rebuild(EntityManager entityManager) {
+        entityManager.createNativeQuery("select team_id from team order by team_id for update").getResultList();
+        entityManager.createQuery("delete from MemberTeamView").executeUpdate();
+        int rows = entityManager.createQuery(INSERT_SELECT).executeUpdate();
+        log.debug("member_team_view rebuilt: {} rows", rows);
+    }
+
+    /**
+     * 팀 행을 id 순서로 잠근다. 여러 팀을 잠그는 트랜잭션끼리 교착되지 않도록 ids 는 정렬된 집합이어야 한다.
+     */
+    static void lockTeams(EntityManager entityManager, SortedSet<Long> ids) {
+        for (List<Long> chunk : chunks(ids)) {
+            entityManager.createNativeQuery("select team_id from team where team_id in (:ids) order by team_id for update")
+                    .setParameter("ids", chunk)
+                    .getResultList();
+        }
+    }
+
+    static List<List<Long>> chunks(Set<Long> ids) {
+        List<Long> all = new ArrayList<>(ids);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += IN_CHUNK_SIZE) {
+            chunks.add(all.subList(from, Math.min(from + IN_CHUNK_SIZE, all.size())));
+        }
+        return chunks;
+    }
+
+    private static class Changes {
+        private final Set<Long> memberIds = new LinkedHashSet<>();
+        private final Set<Long> teamIds = new LinkedHashSet<>();
+        private boolean rebuild;
+    }
+}
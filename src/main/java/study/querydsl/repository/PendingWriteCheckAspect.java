@@ -0,0 +1,30 @@
+package study.querydsl.repository;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import study.querydsl.support.EntityWriteTracker;
+
+/**
+ * 저장소 메서드 한 번 동안 EntityWriteTracker 의 세션 dirty check 를 한 번만 하게 한다.
+ * (search 한 번에 캐시/사전/인덱스가 각자 hasPendingWrites 를 부른다)
+ * 트랜잭션 프록시보다 바깥이어도 된다. 세션이 바뀌면 EntityWriteTracker 가 다시 확인한다.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class PendingWriteCheckAspect {
+
+    @Around("execution(public * *(..)) && (this(study.querydsl.repository.MemberRepository) || target(study.querydsl.repository.MemberJpaRepository))")
+    public Object checkOnce(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean began = EntityWriteTracker.beginCallScope();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            EntityWriteTracker.endCallScope(began);
+        }
+    }
+}
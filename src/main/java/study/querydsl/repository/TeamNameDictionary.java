@@ -0,0 +1,155 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.datasource.RebuildTransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.support.EntityWriteTracker;
+import study.querydsl.support.StatementBudgetGuard;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 팀 이름 -> id 사전. (팀 이름은 유일하지 않아서 id 목록)
+ * 검색에서 teamName 을 team_id 로 먼저 바꾸면 member 만 읽고 끝나서 team 조인이 필요 없다.
+ * Team 변경(벌크 포함)이 커밋되면 버리고 다음 조회 때 다시 읽는다.
+ * 읽을 때는 호출한 쪽 트랜잭션에 참여하지 않고 새 읽기 전용 트랜잭션을 연다.
+ * (참여하면 auto flush 로 커밋 전 팀이 사전에 들어가고, 그 트랜잭션이 롤백돼도 남는다)
+ */
+@Slf4j
+@Component
+public class TeamNameDictionary {
+
+    private final EntityManager entityManager;
+    private final EntityWriteTracker writeTracker;
+    private final TransactionTemplate loadTransaction;
+    private final boolean enabled;
+    private final int maximumSize;
+
+    // 로딩 중에 무효화가 끼어들면 옛 사전을 저장하지 않도록 세대 번호로 확인한다.
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot current;
+
+    public TeamNameDictionary(EntityManager entityManager,
+                              EntityWriteTracker writeTracker,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${member.search.team-dictionary.enabled:true}") boolean enabled,
+                              @Value("${member.search.team-dictionary.maximum-size:10000}") int maximumSize) {
+        this.entityManager = entityManager;
+        this.writeTracker = writeTracker;
+        this.loadTransaction = new RebuildTransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @return 사전. 꺼져 있거나, 현재 트랜잭션에 커밋 전 변경이 있거나(플러시 전 포함), 팀이 너무 많으면 null (조인으로 조회할 것)
+     */
+    public Snapshot snapshot() {
+        if (!enabled || writeTracker.hasPendingWrites()) {
+            return null;
+        }
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            snapshot = load();
+        }
+        return snapshot.isUsable() ? snapshot : null;
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        current = null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            load();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        if (event.isTeam()) {
+            invalidate();
+        }
+    }
+
+    private Snapshot load() {
+        long loadingGeneration = generation.get();
+        // 팀 변경 직후 처음 들어온 요청이 대신 읽는 것이므로 그 요청의 SQL 상한에 넣지 않는다
+        List<Object[]> rows = StatementBudgetGuard.exempt(() -> loadTransaction.execute(status -> entityManager
+                .createQuery("select t.id, t.name from Team t", Object[].class)
+                .setMaxResults(maximumSize + 1)
+                .getResultList()));
+
+        Snapshot snapshot;
+        if (rows.size() > maximumSize) {
+            log.info("team dictionary disabled: more than {} teams", maximumSize);
+            snapshot = Snapshot.UNUSABLE;
+        } else {
+            snapshot = new Snapshot(rows);
+        }
+
+        if (generation.get() == loadingGeneration) {
+            current = snapshot;
+        }
+        return snapshot;
+    }
+
+    public static final class Snapshot {
+
+        private static final Snapshot UNUSABLE = new Snapshot(Collections.emptyList());
+
+        private final Map<String, List<Long>> idsByName = new HashMap<>();
+        private final Map<Long, String> nameById = new HashMap<>();
+
+        private Snapshot(List<Object[]> rows) {
+            for (Object[] row : rows) {
+                Long id = (Long) row[0];
+                String name = (String) row[1];
+                nameById.put(id, name);
+                idsByName.computeIfAbsent(name, n -> new ArrayList<>(1)).add(id);
+            }
+        }
+
+        private boolean isUsable() {
+            return this != UNUSABLE;
+        }
+
+        public List<Long> idsOf(String teamName) {
+            return idsByName.getOrDefault(teamName, Collections.emptyList());
+        }
+
+        public String nameOf(Long teamId) {
+            return teamId != null ? nameById.get(teamId) : null;
+        }
+
+        // team 조인 없이 읽은 DTO 에 팀 이름을 채운다
+        public <T extends Iterable<MemberTeamDto>> T fillTeamNames(T contents) {
+            for (MemberTeamDto dto : contents) {
+                dto.setTeamName(nameOf(dto.getTeamId()));
+            }
+            return contents;
+        }
+
+        public MemberTeamDto fillTeamName(MemberTeamDto dto) {
+            dto.setTeamName(nameOf(dto.getTeamId()));
+            return dto;
+        }
+    }
+}
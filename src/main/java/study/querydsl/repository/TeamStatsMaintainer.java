@@ -0,0 +1,208 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.ActionQueue;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * team_stats(TeamStats) 를 Member/Team 변경에 맞춰 갱신한다.
+ * 트랜잭션 안에서 영향받은 팀 id 를 모아 두었다가 커밋 직전에 그 팀들만 group by 로 다시 계산한다.
+ * (min/max 는 삭제 시 증감으로 유지할 수 없으므로 팀 단위 재계산)
+ * 회원이 팀을 옮기면 이전 팀도 바뀌는데, JPA 콜백으로는 이전 팀을 알 수 없어 Hibernate PostUpdate 의 oldState 를 본다.
+ * 재계산 전에 대상 팀 행을 select ... for update 로 잠근다. 같은 팀을 바꾸는 트랜잭션끼리 서로의 커밋을 보지 못한 채
+ * 집계해서 나중에 커밋한 쪽이 옛 값을 덮어쓰지 않도록 한다.
+ * member.team-stats.table.enabled 일 때만 HibernateConfig 가 등록한다. 벌크 연산은 TeamStatsRepository 가 전체 재계산을 요청한다.
+ * (MemberBulkOperations 의 구간 트랜잭션마다가 아니라 모든 구간이 끝난 뒤 한 번)
+ */
+@Slf4j
+public class TeamStatsMaintainer implements Integrator,
+        PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final Object CHANGES_KEY = TeamStatsMaintainer.class.getName() + ".CHANGES";
+
+    private static final String INSERT_SELECT = "insert into TeamStats (teamId, memberCount, ageSum, ageMin, ageMax)"
+            + " select t.id, count(m.id), coalesce(sum(m.age), 0), min(m.age), max(m.age)"
+            + " from Team t left join t.memberList m";
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Changes changes = currentChanges(event.getSession());
+            if (changes != null) {
+                changes.add(teamIdOf(event.getPersister(), event.getState()));
+            }
+        } else if (event.getEntity() instanceof Team) {
+            // 회원이 없는 팀도 0건 행을 가진다
+            Changes changes = currentChanges(event.getSession());
+            if (changes != null) {
+                changes.add((Long) event.getId());
+            }
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        // 팀 이름 변경은 조회 시 team 과 조인하므로 반영할 것이 없다
+        if (!(event.getEntity() instanceof Member)) {
+            return;
+        }
+        Changes changes = currentChanges(event.getSession());
+        if (changes == null) {
+            return;
+        }
+        if (event.getOldState() == null) {
+            // select-before-update 없이 분리 상태로 update 된 경우 이전 팀을 모른다
+            changes.rebuild = true;
+            return;
+        }
+
+        EntityPersister persister = event.getPersister();
+        Long oldTeamId = teamIdOf(persister, event.getOldState());
+        Long newTeamId = teamIdOf(persister, event.getState());
+        int age = persister.getEntityMetamodel().getPropertyIndex("age");
+        if (Objects.equals(oldTeamId, newTeamId) && Objects.equals(event.getOldState()[age], event.getState()[age])) {
+            return;
+        }
+        changes.add(oldTeamId);
+        changes.add(newTeamId);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            Changes changes = currentChanges(event.getSession());
+            if (changes == null) {
+                return;
+            }
+            if (event.getDeletedState() == null) {
+                changes.rebuild = true;
+            } else {
+                changes.add(teamIdOf(event.getPersister(), event.getDeletedState()));
+            }
+        } else if (event.getEntity() instanceof Team) {
+            // 재계산 대상에 팀이 없으므로 행만 지워진다
+            Changes changes = currentChanges(event.getSession());
+            if (changes != null) {
+                changes.add((Long) event.getId());
+            }
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * 어떤 팀이 바뀌었는지 모르는 변경(벌크 update/delete) 이후 커밋 직전에 전체를 다시 계산하게 한다.
+     */
+    static void requestRebuild(SessionImplementor session) {
+        Changes changes = currentChanges(session);
+        if (changes != null) {
+            changes.rebuild = true;
+        }
+    }
+
+    static void rebuild(EntityManager entityManager) {
+        entityManager.createNativeQuery("select team_id from team order by team_id for update").getResultList();
+        entityManager.createQuery("delete from TeamStats").executeUpdate();
+        int rows = entityManager.createQuery(INSERT_SELECT + " group by t.id").executeUpdate();
+        log.debug("team_stats rebuilt: {} rows", rows);
+    }
+
+    // state 의 team 은 엔티티 또는 프록시 (getId 는 프록시를 초기화하지 않는다)
+    private static Long teamIdOf(EntityPersister persister, Object[] state) {
+        Team team = (Team) state[persister.getEntityMetamodel().getPropertyIndex("team")];
+        return team != null ? team.getId() : null;
+    }
+
+    // 플러시 중에 호출되므로 여기서는 팀 id 만 모으고, 재계산은 세션이 마지막 플러시를 끝낸 뒤에 한다.
+    private static Changes currentChanges(SessionImplementor session) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(CHANGES_KEY);
+        if (changes == null) {
+            changes = new Changes();
+            TransactionSynchronizationManager.bindResource(CHANGES_KEY, changes);
+            ActionQueue actionQueue = session.getActionQueue();
+            actionQueue.registerProcess((BeforeTransactionCompletionProcess) TeamStatsMaintainer::apply);
+            actionQueue.registerProcess((AfterTransactionCompletionProcess) (success, s) ->
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CHANGES_KEY));
+        }
+        return changes;
+    }
+
+    private static void apply(SessionImplementor session) {
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(CHANGES_KEY);
+        if (changes == null) {
+            return;
+        }
+        if (changes.rebuild) {
+            rebuild(session);
+            return;
+        }
+        // 여러 팀을 잠글 때 교착되지 않도록 계산 전에 전부 id 순서로 잠근다
+        SortedSet<Long> teamIds = new TreeSet<>(changes.teamIds);
+        MemberTeamReadModel.lockTeams(session, teamIds);
+        for (List<Long> ids : MemberTeamReadModel.chunks(teamIds)) {
+            session.createQuery("delete from TeamStats s where s.teamId in :ids")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+            session.createQuery(INSERT_SELECT + " where t.id in :ids group by t.id")
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+        }
+    }
+
+    private static class Changes {
+        private final Set<Long> teamIds = new LinkedHashSet<>();
+        private boolean rebuild;
+
+        // 팀 없는 회원은 집계 대상이 아니다
+        private void add(Long teamId) {
+            if (teamId != null) {
+                teamIds.add(teamId);
+            }
+        }
+    }
+}
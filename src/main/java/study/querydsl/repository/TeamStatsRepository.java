@@ -0,0 +1,126 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.QTeamStatsDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.EntityChangeListener;
+import study.querydsl.support.EntityWriteTracker;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamStats.teamStats;
+
+/**
+ * 팀별 회원 나이 통계(count/sum/avg/min/max).
+ * 회원을 읽어 와서 애플리케이션에서 접지 않고 group by 한 번으로 DB 에서 계산한다.
+ * member.team-stats.table.enabled 면 TeamStatsMaintainer 가 유지하는 team_stats 에서 팀 수만큼만 읽는다.
+ */
+@Repository
+public class TeamStatsRepository {
+
+    private final EntityManager entityManager;
+    private final JPAQueryFactory queryFactory;
+    private final EntityWriteTracker writeTracker;
+    private final PlatformTransactionManager transactionManager;
+    private final boolean tableEnabled;
+
+    public TeamStatsRepository(EntityManager entityManager,
+                               EntityWriteTracker writeTracker,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${member.team-stats.table.enabled:false}") boolean tableEnabled) {
+        this.entityManager = entityManager;
+        this.queryFactory = new JPAQueryFactory(entityManager);
+        this.writeTracker = writeTracker;
+        this.transactionManager = transactionManager;
+        this.tableEnabled = tableEnabled;
+    }
+
+    @Transactional(readOnly = true)
+    public List<TeamStatsDto> findAll() {
+        // 커밋 전 변경은 team_stats 에 아직 반영되지 않았다
+        if (tableEnabled && !writeTracker.hasPendingWrites()) {
+            return fromTable();
+        }
+        return aggregate();
+    }
+
+    /**
+     * team_stats 를 거치지 않고 member 에서 바로 group by 한다. 회원이 없는 팀도 0건으로 포함된다.
+     */
+    @Transactional(readOnly = true)
+    public List<TeamStatsDto> aggregate() {
+        return queryFactory
+                .select(new QTeamStatsDto(
+                        team.id,
+                        team.name,
+                        member.count(),
+                        // sum(int) 의 결과 타입은 Long
+                        Expressions.numberTemplate(Long.class, "sum({0})", member.age),
+                        member.age.avg(),
+                        member.age.min(),
+                        member.age.max()))
+                .from(team)
+                .leftJoin(team.memberList, member)
+                .groupBy(team.id, team.name)
+                .orderBy(team.name.asc(), team.id.asc())
+                .fetch();
+    }
+
+    private void rebuildInNewTransaction() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            TeamStatsMaintainer.rebuild(entityManager);
+            return null;
+        });
+    }
+
+    private List<TeamStatsDto> fromTable() {
+        return queryFactory
+                .select(new QTeamStatsDto(
+                        teamStats.teamId,
+                        team.name,
+                        teamStats.memberCount,
+                        teamStats.ageSum,
+                        teamStats.ageMin,
+                        teamStats.ageMax))
+                .from(teamStats)
+                .join(team).on(team.id.eq(teamStats.teamId))
+                .orderBy(team.name.asc(), team.id.asc())
+                .fetch();
+    }
+
+    // 꺼져 있던 동안의 변경은 반영되지 않았으므로 시작할 때 한 번 다시 계산한다.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (tableEnabled) {
+            rebuildInNewTransaction();
+        }
+    }
+
+    // 벌크 update/delete 는 Hibernate 이벤트가 오지 않으므로 커밋 직전에 전체를 다시 계산한다.
+    // MemberBulkOperations 의 구간 트랜잭션에서는 미뤄 두고, 모든 구간이 끝난 뒤 트랜잭션 밖에서 오는 BULK 에 한 번만 계산한다.
+    @EventListener
+    public void onEntityChange(EntityChangeEvent event) {
+        if (!tableEnabled || event.getType() != EntityChangeEvent.Type.BULK) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            rebuildInNewTransaction();
+        } else if (!EntityChangeListener.isRebuildDeferred()) {
+            TeamStatsMaintainer.requestRebuild(entityManager.unwrap(SessionImplementor.class));
+        }
+    }
+}
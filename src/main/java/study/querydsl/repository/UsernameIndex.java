@@ -0,0 +1,379 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.datasource.RebuildTransactionTemplate;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.support.EntityWriteTracker;
+import study.querydsl.support.LongIntHashMap;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * username 3-gram 인덱스. like 'foo%' / like '%foo%' 는 DB 에서 풀스캔이 되므로 후보 member id 를 여기서 먼저 찾는다.
+ * 접두사는 시작 표시(START)를 붙인 gram 으로 찾는다. 후보는 username 으로 다시 확인하므로 결과에 거짓 양성은 없다.
+ * 회원마다 0 부터 촘촘한 번호(ordinal)를 붙이고, gram 마다 그 번호의 정렬된 int 배열(postings)을 둔다. (박싱 없음)
+ * 커밋된 Member 변경을 하나씩 반영하고, 벌크 연산 후에는 백그라운드에서 다시 읽는다.
+ * 다시 읽는 동안에는 null 을 돌려준다. (커밋한 스레드에서 전체를 읽지 않는다)
+ */
+@Slf4j
+@Component
+public class UsernameIndex {
+
+    private static final int GRAM = 3;
+    private static final char START = '\u0002';
+
+    private final EntityManager entityManager;
+    private final EntityWriteTracker writeTracker;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final int maxCandidates;
+    private final ExecutorService loader;
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+
+    private volatile State current;
+
+    public UsernameIndex(EntityManager entityManager,
+                         EntityWriteTracker writeTracker,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${member.search.username-index.enabled:false}") boolean enabled,
+                         @Value("${member.search.username-index.max-candidates:1000}") int maxCandidates) {
+        this.entityManager = entityManager;
+        this.writeTracker = writeTracker;
+        this.readOnlyTransaction = new RebuildTransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxCandidates = Math.min(maxCandidates, InListChunks.MAX_SIZE);
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "username-index-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return username 이 PREFIX/CONTAINS 로 맞는 member id (오름차순).
+     * 인덱스로 답할 수 없으면 (꺼져 있음, 로딩 중, 커밋 전 변경, 검색어가 짧음, 후보가 너무 많음) null -> DB 에서 like 로 찾을 것
+     */
+    public List<Long> find(String username, UsernameMatch match) {
+        if (!enabled || username == null || match == null || match == UsernameMatch.EXACT
+                || writeTracker.hasPendingWrites()) {
+            return null;
+        }
+        State state = current;
+        if (state == null || !state.ready) {
+            return null;
+        }
+
+        long[] grams = grams(username, match == UsernameMatch.PREFIX);
+        if (grams.length == 0) {
+            return null;
+        }
+        return state.find(grams, username, match, maxCandidates);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            reload();
+        }
+    }
+
+    /**
+     * 지금 인덱스를 버리고 백그라운드에서 다시 읽는다. 이미 대기 중인 재로딩이 있으면 그것으로 합친다.
+     */
+    public void reload() {
+        current = null;
+        if (reloadQueued.compareAndSet(false, true)) {
+            loader.execute(() -> {
+                reloadQueued.set(false);
+                try {
+                    load();
+                } catch (RuntimeException e) {
+                    log.warn("username index load failed, matching in the database until the next reload", e);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        State state = current;
+        if (!enabled || state == null || !event.isMember()) {
+            return;
+        }
+        if (event.getType() == EntityChangeEvent.Type.BULK) {
+            reload();
+            return;
+        }
+
+        Member member = (Member) event.getEntity();
+        if (event.getType() == EntityChangeEvent.Type.REMOVE) {
+            state.apply(member.getId(), null, true);
+        } else {
+            state.apply(member.getId(), member.getUsername(), true);
+        }
+    }
+
+    /**
+     * 전체를 지금 스레드에서 다시 읽는다. 읽는 동안 커밋된 변경은 새 인덱스에 바로 반영되고, 그 회원의 행은 덮어쓰지 않는다.
+     */
+    public synchronized void load() {
+        State state = new State();
+        current = state;
+        readOnlyTransaction.execute(status -> {
+            ScrollableResults rows = entityManager.unwrap(Session.class)
+                    .createQuery("select m.id, m.username from Member m")
+                    .setReadOnly(true)
+                    .setFetchSize(1000)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (rows.next()) {
+                    state.apply((Long) rows.get(0), (String) rows.get(1), false);
+                }
+            } finally {
+                rows.close();
+            }
+            return null;
+        });
+        state.ready = true;
+        log.debug("username index loaded: {} members, {} grams", state.ordinalById.size(), state.gramCount);
+    }
+
+    private static boolean matches(String candidate, String username, UsernameMatch match) {
+        return match == UsernameMatch.PREFIX ? candidate.startsWith(username) : candidate.contains(username);
+    }
+
+    // PREFIX 는 START 를 붙인 앞쪽 gram 까지만 보면 된다. 3글자가 안 되는 CONTAINS 검색어는 gram 이 없다.
+    static long[] grams(String value, boolean prefixOnly) {
+        String text = prefixOnly ? START + value : value;
+        long[] grams = new long[Math.max(text.length() - GRAM + 1, 0)];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = gram(text, i);
+        }
+        return grams;
+    }
+
+    // char 3개를 16비트씩 long 하나에 담는다
+    private static long gram(String text, int from) {
+        return (long) text.charAt(from) << 32 | (long) text.charAt(from + 1) << 16 | text.charAt(from + 2);
+    }
+
+    private static final class State {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        // member id <-> ordinal. 지운 ordinal 은 free 에 두었다가 재사용한다.
+        private final LongIntHashMap ordinalById = new LongIntHashMap(1024);
+        private final BitSet free = new BitSet();
+        private int nextOrdinal;
+        private long[] idByOrdinal = new long[1024];
+        private String[] usernameByOrdinal = new String[1024];
+
+        // gram -> slot -> postings
+        private final LongIntHashMap gramSlots = new LongIntHashMap(1024);
+        private Postings[] postings = new Postings[1024];
+        private int gramCount;
+
+        // 로딩 중에 이벤트로 반영된 회원. 로딩 쿼리의 (더 오래된) 행으로 덮어쓰지 않는다.
+        private final Set<Long> changedWhileLoading = new HashSet<>();
+        private volatile boolean ready;
+
+        private List<Long> find(long[] grams, String username, UsernameMatch match, int maxCandidates) {
+            lock.readLock().lock();
+            try {
+                List<Postings> lists = new ArrayList<>(grams.length);
+                for (long gram : grams) {
+                    int slot = gramSlots.get(gram);
+                    if (slot == LongIntHashMap.MISSING || postings[slot].size == 0) {
+                        return Collections.emptyList();
+                    }
+                    lists.add(postings[slot]);
+                }
+                // 가장 짧은 postings 부터 교집합. 후보는 가장 짧은 목록 크기를 넘지 않는다.
+                lists.sort(Comparator.comparingInt(p -> p.size));
+                int[] candidates = Arrays.copyOf(lists.get(0).ordinals, lists.get(0).size);
+                int count = candidates.length;
+                for (int i = 1; i < lists.size() && count > 0; i++) {
+                    count = lists.get(i).retain(candidates, count);
+                }
+
+                // gram 이 다 있어도 위치가 맞는지는 모르므로 username 으로 확인한다
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    int ordinal = candidates[i];
+                    if (matches(usernameByOrdinal[ordinal], username, match)) {
+                        if (ids.size() == maxCandidates) {
+                            return null;
+                        }
+                        ids.add(idByOrdinal[ordinal]);
+                    }
+                }
+                Collections.sort(ids);
+                return ids;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void apply(long id, String username, boolean fromEvent) {
+            lock.writeLock().lock();
+            try {
+                if (!ready) {
+                    if (fromEvent) {
+                        changedWhileLoading.add(id);
+                    } else if (changedWhileLoading.contains(id)) {
+                        return;
+                    }
+                }
+                int ordinal = ordinalById.get(id);
+                if (ordinal != LongIntHashMap.MISSING) {
+                    String previous = usernameByOrdinal[ordinal];
+                    if (previous.equals(username)) {
+                        return;
+                    }
+                    unlink(ordinal, previous);
+                    if (username == null) {
+                        ordinalById.remove(id);
+                        usernameByOrdinal[ordinal] = null;
+                        free.set(ordinal);
+                        return;
+                    }
+                } else if (username == null) {
+                    return;
+                } else {
+                    ordinal = allocateOrdinal();
+                    ordinalById.put(id, ordinal);
+                    idByOrdinal[ordinal] = id;
+                }
+                usernameByOrdinal[ordinal] = username;
+                for (long gram : indexGrams(username)) {
+                    postingsOf(gram).add(ordinal);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void unlink(int ordinal, String username) {
+            for (long gram : indexGrams(username)) {
+                int slot = gramSlots.get(gram);
+                if (slot != LongIntHashMap.MISSING) {
+                    postings[slot].remove(ordinal);
+                }
+            }
+        }
+
+        private Postings postingsOf(long gram) {
+            int slot = gramSlots.get(gram);
+            if (slot == LongIntHashMap.MISSING) {
+                slot = gramCount++;
+                if (slot == postings.length) {
+                    postings = Arrays.copyOf(postings, slot << 1);
+                }
+                postings[slot] = new Postings();
+                gramSlots.put(gram, slot);
+            }
+            return postings[slot];
+        }
+
+        private int allocateOrdinal() {
+            int ordinal = free.nextSetBit(0);
+            if (ordinal >= 0) {
+                free.clear(ordinal);
+                return ordinal;
+            }
+            ordinal = nextOrdinal++;
+            if (ordinal == idByOrdinal.length) {
+                idByOrdinal = Arrays.copyOf(idByOrdinal, ordinal << 1);
+                usernameByOrdinal = Arrays.copyOf(usernameByOrdinal, ordinal << 1);
+            }
+            return ordinal;
+        }
+
+        // 포함 검색용 gram + 접두사 검색용 START gram
+        private static long[] indexGrams(String username) {
+            return grams(START + username, false);
+        }
+    }
+
+    /**
+     * 오름차순 ordinal 배열. 로딩 중에는 ordinal 이 증가하는 순서로 들어오므로 대부분 끝에 붙는다.
+     */
+    private static final class Postings {
+
+        private int[] ordinals = new int[4];
+        private int size;
+
+        private void add(int ordinal) {
+            int i = size == 0 || ordinals[size - 1] < ordinal ? -size - 1 : Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (i >= 0) {
+                return;
+            }
+            int insertAt = -i - 1;
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size << 1);
+            }
+            System.arraycopy(ordinals, insertAt, ordinals, insertAt + 1, size - insertAt);
+            ordinals[insertAt] = ordinal;
+            size++;
+        }
+
+        private void remove(int ordinal) {
+            int i = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (i >= 0) {
+                System.arraycopy(ordinals, i + 1, ordinals, i, size - i - 1);
+                size--;
+            }
+        }
+
+        /**
+         * candidates[0, count) 중 이 목록에도 있는 것만 앞으로 모은다. 둘 다 정렬되어 있으므로 찾은 위치부터 이어서 찾는다.
+         * @return 남은 개수
+         */
+        private int retain(int[] candidates, int count) {
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < count && from < size; i++) {
+                int found = Arrays.binarySearch(ordinals, from, size, candidates[i]);
+                if (found >= 0) {
+                    candidates[kept++] = candidates[i];
+                    from = found + 1;
+                } else {
+                    from = -found - 1;
+                }
+            }
+            return kept;
+        }
+    }
+}
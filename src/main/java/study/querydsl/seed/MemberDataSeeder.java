@@ -0,0 +1,132 @@
+package study.querydsl.seed;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.EntityChangeListener;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 대량 테스트 데이터 생성기.
+ * JDBC batch insert(hibernate.jdbc.batch_size, order_inserts) + pooled 시퀀스 + 주기적인 flush/clear 로
+ * 건수와 상관없이 메모리를 일정하게 유지한다. 수천만 건을 넣을 때는 p6spy 로그를 끄는 게 좋다.
+ * (decorator.datasource.p6spy.enable-logging=false)
+ * 적재 중에는 행마다 EntityChangeEvent 를 내지 않고, 끝나면 Team/Member BULK 이벤트를 한 번씩 발행해서
+ * 캐시/인덱스/읽기 모델이 한 번만 다시 만들어지게 한다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemberDataSeeder {
+
+    private final EntityManager em;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public long seed(MemberSeedSpec spec) {
+        spec.validate();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        try {
+            long[] teamIds = tx.execute(status -> {
+                EntityChangeListener.suppressInCurrentTransaction();
+                return persistTeams(spec);
+            });
+            TeamPicker teamPicker = new TeamPicker(teamIds.length, spec.getTeamSkew());
+            Random random = new Random(spec.getRandomSeed());
+
+            long started = System.currentTimeMillis();
+            for (long start = 0; start < spec.getMemberCount(); start += spec.getCommitSize()) {
+                long from = start;
+                long to = Math.min(start + spec.getCommitSize(), spec.getMemberCount());
+                tx.execute(status -> {
+                    EntityChangeListener.suppressInCurrentTransaction();
+                    persistMembers(spec, from, to, teamIds, teamPicker, random);
+                    return null;
+                });
+                log.info("seeded {}/{} members ({} ms)", to, spec.getMemberCount(), System.currentTimeMillis() - started);
+            }
+            return spec.getMemberCount();
+        } finally {
+            // 중간에 실패해도 이미 커밋된 청크는 반영되어야 한다
+            tx.execute(status -> {
+                eventPublisher.publishEvent(EntityChangeEvent.bulk(Team.class));
+                eventPublisher.publishEvent(EntityChangeEvent.bulk(Member.class));
+                return null;
+            });
+        }
+    }
+
+    private long[] persistTeams(MemberSeedSpec spec) {
+        long[] teamIds = new long[spec.getTeamCount()];
+        for (int i = 0; i < teamIds.length; i++) {
+            Team team = new Team(teamName(spec, i));
+            em.persist(team);
+            teamIds[i] = team.getId();
+        }
+        return teamIds;
+    }
+
+    private void persistMembers(MemberSeedSpec spec, long from, long to, long[] teamIds,
+                                TeamPicker teamPicker, Random random) {
+        boolean demo = spec.getDataset() == MemberSeedSpec.Dataset.DEMO;
+        for (long i = from; i < to; i++) {
+            Member member = new Member("member" + i, demo ? (int) i : nextAge(spec, random));
+            int teamIndex = demo ? (int) (i % teamIds.length) : teamPicker.pick(random);
+            // changeTeam 은 team.memberList 를 초기화하므로 연관관계 주인 쪽만 세팅한다.
+            member.setTeam(em.getReference(Team.class, teamIds[teamIndex]));
+            em.persist(member);
+
+            if ((i - from + 1) % spec.getFlushSize() == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private static String teamName(MemberSeedSpec spec, int index) {
+        if (spec.getDataset() == MemberSeedSpec.Dataset.DEMO && index < 26) {
+            return "team" + (char) ('A' + index);
+        }
+        return "team" + index;
+    }
+
+    private static int nextAge(MemberSeedSpec spec, Random random) {
+        if (spec.getAgeDistribution() == MemberSeedSpec.AgeDistribution.NORMAL) {
+            long age = Math.round(spec.getAgeMean() + random.nextGaussian() * spec.getAgeStdDev());
+            return (int) Math.max(spec.getMinAge(), Math.min(spec.getMaxAge(), age));
+        }
+        return spec.getMinAge() + random.nextInt(spec.getMaxAge() - spec.getMinAge() + 1);
+    }
+
+    // Zipf 분포로 팀을 고른다. (누적 가중치 + 이진 탐색)
+    static class TeamPicker {
+        private final double[] cumulative;
+
+        TeamPicker(int teamCount, double skew) {
+            cumulative = new double[teamCount];
+            double sum = 0;
+            for (int i = 0; i < teamCount; i++) {
+                sum += 1.0 / Math.pow(i + 1, skew);
+                cumulative[i] = sum;
+            }
+        }
+
+        int pick(Random random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, target);
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package study.querydsl.seed;
+
+import lombok.Data;
+
+@Data
+public class MemberSeedSpec {
+
+    public enum Dataset {
+        // teamA, teamB, ... 에 회원을 번갈아 넣고 age = 회원 번호 (예제용 기본 데이터)
+        DEMO,
+        // 아래 나이 분포/팀 쏠림 설정을 따르는 무작위 데이터
+        RANDOM
+    }
+
+    public enum AgeDistribution {
+        UNIFORM, NORMAL
+    }
+
+    private Dataset dataset = Dataset.DEMO;
+
+    private long memberCount = 100;
+    private int teamCount = 2;
+
+    private AgeDistribution ageDistribution = AgeDistribution.UNIFORM;
+    private int minAge = 0;
+    private int maxAge = 99;
+    private double ageMean = 40;
+    private double ageStdDev = 12;
+
+    // Zipf 지수. 0 이면 팀마다 고르게, 클수록 앞쪽 팀에 회원이 몰린다.
+    private double teamSkew = 0;
+
+    // flush/clear 단위 (hibernate.jdbc.batch_size 의 배수로 맞추는 게 좋다)
+    private int flushSize = 1000;
+    // 트랜잭션 하나에서 넣을 회원 수
+    private int commitSize = 50_000;
+
+    private long randomSeed = 42;
+
+    void validate() {
+        if (memberCount < 0 || teamCount < 1 || minAge > maxAge || flushSize < 1 || commitSize < flushSize) {
+            throw new IllegalArgumentException("invalid seed spec: " + this);
+        }
+    }
+}
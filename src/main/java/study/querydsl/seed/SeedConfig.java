@@ -0,0 +1,15 @@
+package study.querydsl.seed;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SeedConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "member.seed")
+    public MemberSeedSpec memberSeedSpec() {
+        return new MemberSeedSpec();
+    }
+}
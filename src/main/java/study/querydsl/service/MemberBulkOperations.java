@@ -0,0 +1,240 @@
+package study.querydsl.service;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.EntityChangeListener;
+import study.querydsl.entity.Member;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * Member 벌크 update/delete 를 id 구간(chunk-size)으로 나눠서 짧은 트랜잭션으로 실행한다.
+ * 끝나면 현재 영속성 컨텍스트에 남아있는 Member 를 refresh(update) / detach(delete) 해서 예전 값이 보이지 않게 한다.
+ *
+ * 이미 트랜잭션 안에서 호출하면 (같은 row 락을 서로 기다리지 않도록) 현재 트랜잭션에서 구간 순서대로 실행한다.
+ * 트랜잭션 밖에서 호출하면 구간마다 커밋되므로 전체가 하나의 원자적 연산은 아니다.
+ * 이때 구간 트랜잭션에서는 읽기 모델/team_stats 의 전체 재계산을 미루고, 모든 구간이 끝난 뒤 BULK 이벤트를 한 번 발행한다.
+ * predicate 는 조인 없이 member 경로만 사용해야 한다. (JPQL 벌크 연산 제약)
+ */
+@Service
+public class MemberBulkOperations {
+
+    private final EntityManager entityManager;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate chunkTransaction;
+    private final TransactionTemplate syncTransaction;
+    private final int chunkSize;
+    private final ExecutorService executor;
+
+    public MemberBulkOperations(EntityManager entityManager,
+                                EntityManagerFactory entityManagerFactory,
+                                PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${member.bulk.chunk-size:10000}") int chunkSize,
+                                @Value("${member.bulk.parallelism:1}") int parallelism) {
+        this.entityManager = entityManager;
+        this.entityManagerFactory = entityManagerFactory;
+        this.eventPublisher = eventPublisher;
+        this.queryFactory = new JPAQueryFactory(entityManager);
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.syncTransaction = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+    }
+
+    public long update(Predicate predicate, Consumer<JPAUpdateClause> assignments) {
+        return execute(predicate, false, chunk -> {
+            JPAUpdateClause clause = queryFactory.update(member).where(predicate, chunk.toPredicate());
+            assignments.accept(clause);
+            return clause.execute();
+        });
+    }
+
+    public long delete(Predicate predicate) {
+        return execute(predicate, true, chunk -> queryFactory
+                .delete(member)
+                .where(predicate, chunk.toPredicate())
+                .execute());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private long execute(Predicate predicate, boolean delete, ChunkStatement statement) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.flush();
+            IdRange range = idRange(predicate);
+            long affected = 0;
+            for (IdRange chunk : range.split(chunkSize)) {
+                affected += statement.execute(chunk);
+            }
+            synchronizePersistenceContext(range, delete);
+            return affected;
+        }
+
+        IdRange range = idRange(predicate);
+        try {
+            return executor == null
+                    ? executeSequentially(range.split(chunkSize), statement)
+                    : executeInParallel(range.split(chunkSize), statement);
+        } finally {
+            // 중간에 실패해도 이미 커밋된 구간은 반영되어야 한다
+            syncTransaction.execute(status -> {
+                if (!range.isEmpty()) {
+                    eventPublisher.publishEvent(EntityChangeEvent.bulk(Member.class));
+                }
+                synchronizePersistenceContext(range, delete);
+                return null;
+            });
+        }
+    }
+
+    private long executeSequentially(List<IdRange> chunks, ChunkStatement statement) {
+        long affected = 0;
+        for (IdRange chunk : chunks) {
+            affected += executeChunk(chunk, statement);
+        }
+        return affected;
+    }
+
+    private long executeInParallel(List<IdRange> chunks, ChunkStatement statement) {
+        List<Future<Long>> futures = new ArrayList<>(chunks.size());
+        for (IdRange chunk : chunks) {
+            futures.add(executor.submit(() -> executeChunk(chunk, statement)));
+        }
+
+        long affected = 0;
+        try {
+            for (Future<Long> future : futures) {
+                affected += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("bulk operation interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(false));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return affected;
+    }
+
+    private long executeChunk(IdRange chunk, ChunkStatement statement) {
+        return chunkTransaction.execute(status -> {
+            EntityChangeListener.deferRebuildsInCurrentTransaction();
+            return statement.execute(chunk);
+        });
+    }
+
+    private IdRange idRange(Predicate predicate) {
+        Tuple tuple = queryFactory
+                .select(member.id.min(), member.id.max())
+                .from(member)
+                .where(predicate)
+                .fetchOne();
+        return tuple == null
+                ? new IdRange(null, null)
+                : new IdRange(tuple.get(member.id.min()), tuple.get(member.id.max()));
+    }
+
+    // 현재 스레드에 묶인 영속성 컨텍스트(트랜잭션, OSIV)에서 벌크 연산 대상 구간의 Member 를 정리한다.
+    private void synchronizePersistenceContext(IdRange range, boolean delete) {
+        EntityManager current = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        if (current == null || range.isEmpty()) {
+            return;
+        }
+
+        Map.Entry<Object, EntityEntry>[] entries = current.unwrap(SessionImplementor.class)
+                .getPersistenceContext()
+                .reentrantSafeEntityEntries();
+        for (Map.Entry<Object, EntityEntry> entry : entries) {
+            if (!(entry.getKey() instanceof Member) || !range.contains(((Member) entry.getKey()).getId())) {
+                continue;
+            }
+
+            Object entity = entry.getKey();
+            if (delete) {
+                current.detach(entity);
+                continue;
+            }
+            try {
+                current.refresh(entity);
+            } catch (EntityNotFoundException e) {
+                current.detach(entity);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkStatement {
+        long execute(IdRange chunk);
+    }
+
+    static class IdRange {
+        private final Long min;
+        private final Long max;
+
+        IdRange(Long min, Long max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        boolean isEmpty() {
+            return min == null || max == null;
+        }
+
+        boolean contains(Long id) {
+            return !isEmpty() && id != null && id >= min && id <= max;
+        }
+
+        List<IdRange> split(int size) {
+            List<IdRange> chunks = new ArrayList<>();
+            if (isEmpty()) {
+                return chunks;
+            }
+            for (long from = min; from <= max; from += size) {
+                chunks.add(new IdRange(from, Math.min(from + size - 1, max)));
+            }
+            return chunks;
+        }
+
+        Predicate toPredicate() {
+            return member.id.between(min, max);
+        }
+    }
+}
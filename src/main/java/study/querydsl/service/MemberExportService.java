@@ -0,0 +1,53 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mysema.commons.lang.CloseableIterator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@Service
+public class MemberExportService {
+
+    private static final int FETCH_SIZE = 500;
+
+    private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+    // 루트 값 사이 기본 구분자(" ")를 없애고, 앱 ObjectMapper 에 INDENT_OUTPUT 이 켜져도 한 줄로 쓴다
+    private final ObjectWriter lineWriter;
+
+    public MemberExportService(MemberRepository memberRepository, ObjectMapper objectMapper) {
+        this.memberRepository = memberRepository;
+        this.objectMapper = objectMapper;
+        this.lineWriter = objectMapper.writerFor(MemberTeamDto.class)
+                .without(SerializationFeature.INDENT_OUTPUT)
+                .withRootValueSeparator("");
+    }
+
+    // 한 줄에 MemberTeamDto 하나씩 (NDJSON). 결과 건수와 상관없이 메모리 사용량이 일정하다.
+    @Transactional(readOnly = true)
+    public long exportNdjson(MemberSearchCondition condition, OutputStream out) throws IOException {
+        long count = 0;
+        try (CloseableIterator<MemberTeamDto> rows = memberRepository.searchIterate(condition, FETCH_SIZE);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            SequenceWriter lines = lineWriter.writeValues(generator);
+            while (rows.hasNext()) {
+                lines.write(rows.next());
+                generator.writeRaw('\n');
+                count++;
+            }
+            lines.flush();
+        }
+        return count;
+    }
+}
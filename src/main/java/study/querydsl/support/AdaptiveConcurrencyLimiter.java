@@ -0,0 +1,130 @@
+package study.querydsl.support;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 지연 시간 기반(TCP Vegas 방식) 동시 실행 제한.
+ * 부하가 없을 때의 최소 응답 시간(rttNoLoad)과 현재 응답 시간을 비교해서 대기열 길이를 추정하고,
+ *   queue = limit * (1 - rttNoLoad / rtt)
+ * 추정치가 alpha 보다 작으면 limit 을 늘리고 beta 보다 크면 줄인다.
+ * limit 을 넘는 요청은 기다리지 않고 바로 거절한다. (tryAcquire 가 null)
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    // 이만큼 샘플마다 rttNoLoad 를 현재 값으로 다시 잡는다. (DB 가 느려진 상태가 새 기준이 될 수 있도록)
+    private final int probeMultiplier;
+    private final LongSupplier nanoClock;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile double limit;
+    private volatile double estimatedQueue;
+    private long rttNoLoad;
+    private long samples;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, 30, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int probeMultiplier, LongSupplier nanoClock) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("invalid limits: " + minLimit + " <= " + initialLimit + " <= " + maxLimit);
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.probeMultiplier = probeMultiplier;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @return limit 을 넘으면 null
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.incrementAndGet();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(nanoClock.getAsLong(), current + 1);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public double getEstimatedQueue() {
+        return estimatedQueue;
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private synchronized void onSample(long rtt, int inFlightAtStart) {
+        samples++;
+        if (rttNoLoad == 0 || rtt < rttNoLoad || samples % ((long) probeMultiplier * getLimit()) == 0) {
+            rttNoLoad = rtt;
+            return;
+        }
+
+        double current = limit;
+        double queue = current * (1 - (double) rttNoLoad / rtt);
+        estimatedQueue = queue;
+
+        // limit 의 절반도 안 쓰고 있으면 limit 이 병목이 아니므로 늘리지 않는다.
+        if (inFlightAtStart * 2 < current && queue < alpha(current)) {
+            return;
+        }
+
+        double step = Math.max(1, Math.log10(current));
+        if (queue < alpha(current)) {
+            current += step;
+        } else if (queue > beta(current)) {
+            current -= step;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, current));
+    }
+
+    private static double alpha(double limit) {
+        return 3 * Math.max(1, Math.log10(limit));
+    }
+
+    private static double beta(double limit) {
+        return 6 * Math.max(1, Math.log10(limit));
+    }
+
+    public class Permit {
+
+        private final long startNanos;
+        private final int inFlightAtStart;
+
+        private Permit(long startNanos, int inFlightAtStart) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * @param success 실패한 요청의 응답 시간은 지연의 지표가 아니므로 limit 계산에 쓰지 않는다.
+         */
+        public void release(boolean success) {
+            inFlight.decrementAndGet();
+            if (success) {
+                onSample(Math.max(1, nanoClock.getAsLong() - startNanos), inFlightAtStart);
+            }
+        }
+    }
+}
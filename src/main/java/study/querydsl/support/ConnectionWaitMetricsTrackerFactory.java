@@ -0,0 +1,65 @@
+package study.querydsl.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Hikari 풀이 커넥션을 내줄 때 잰 대기 시간을 QueryCounter 에 누적한다.
+ * 커넥션을 빌린 스레드에서 호출되므로 요청 스레드의 대기 시간이 된다.
+ * LazyConnectionDataSourceProxy 같은 래퍼 바깥에서 재면 실제 커넥션을 얻기 전이라 0 에 가깝다. 그래서 풀에서 잰다.
+ * 기존 MetricsTrackerFactory(Micrometer 의 hikaricp.* 등)가 있으면 그대로 전달한다.
+ */
+public class ConnectionWaitMetricsTrackerFactory implements MetricsTrackerFactory {
+
+    private final MetricsTrackerFactory delegate;
+
+    public ConnectionWaitMetricsTrackerFactory(MetricsTrackerFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 풀이 시작되기 전에만 바꿀 수 있다. 이미 설치되어 있으면 그대로 둔다.
+     */
+    public static void install(HikariDataSource dataSource, MetricsTrackerFactory delegate) {
+        MetricsTrackerFactory current = dataSource.getMetricsTrackerFactory();
+        if (current instanceof ConnectionWaitMetricsTrackerFactory) {
+            return;
+        }
+        dataSource.setMetricsTrackerFactory(new ConnectionWaitMetricsTrackerFactory(current != null ? current : delegate));
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        IMetricsTracker tracker = delegate != null ? delegate.create(poolName, poolStats) : new IMetricsTracker() {
+        };
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                tracker.recordConnectionCreatedMillis(connectionCreatedMillis);
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                QueryCounter.connectionAcquired(elapsedAcquiredNanos);
+                tracker.recordConnectionAcquiredNanos(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                tracker.recordConnectionUsageMillis(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                tracker.recordConnectionTimeout();
+            }
+
+            @Override
+            public void close() {
+                tracker.close();
+            }
+        };
+    }
+}
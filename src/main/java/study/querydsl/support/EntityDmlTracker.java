@@ -0,0 +1,96 @@
+package study.querydsl.support;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreDeleteEvent;
+import org.hibernate.event.spi.PreDeleteEventListener;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * 엔티티 단위 insert/update/delete SQL 이 실행되는 구간을 표시한다.
+ * 이 구간 밖에서 나가는 member/team DML 은 벌크 연산(JPQL update/delete)으로 본다.
+ */
+public class EntityDmlTracker implements Integrator,
+        PreInsertEventListener, PostInsertEventListener,
+        PreUpdateEventListener, PostUpdateEventListener,
+        PreDeleteEventListener, PostDeleteEventListener {
+
+    private static final ThreadLocal<Boolean> EXECUTING = new ThreadLocal<>();
+
+    public static boolean isExecutingEntityDml() {
+        return EXECUTING.get() != null;
+    }
+
+    // flush 중 예외로 Post 이벤트가 오지 않은 경우를 위해 트랜잭션 종료 시 호출
+    public static void reset() {
+        EXECUTING.remove();
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.PRE_INSERT, this);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.PRE_UPDATE, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.PRE_DELETE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        EXECUTING.set(Boolean.TRUE);
+        return false;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        EXECUTING.remove();
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        EXECUTING.set(Boolean.TRUE);
+        return false;
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        EXECUTING.remove();
+    }
+
+    @Override
+    public boolean onPreDelete(PreDeleteEvent event) {
+        EXECUTING.set(Boolean.TRUE);
+        return false;
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        EXECUTING.remove();
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
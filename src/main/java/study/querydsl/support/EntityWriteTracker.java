@@ -0,0 +1,103 @@
+package study.querydsl.support;
+
+import org.hibernate.Session;
+import org.springframework.context.event.EventListener;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.EntityChangeEvent;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 현재 트랜잭션에서 Member/Team 을 변경했는지 기억한다.
+ * 커밋 전 변경분은 다른 트랜잭션에서 보이지 않으므로, 변경한 트랜잭션 안에서는 캐시/인메모리 구조를 우회해야 한다.
+ * 엔티티 이벤트는 플러시 때 오므로 persist/merge/remove 는 UnflushedWriteListener 가 호출 시점에 표시한다.
+ * 관리 중인 엔티티의 필드 변경만 세션 dirty check(관리 중인 엔티티 수만큼 비용)로 확인하는데,
+ * 저장소 메서드 한 번 안에서는 엔티티가 바뀌지 않으므로 callScope 안에서는 세션마다 한 번만 확인한다.
+ */
+@Component
+public class EntityWriteTracker {
+
+    private static final Object PENDING_WRITES_KEY = EntityWriteTracker.class.getName() + ".PENDING_WRITES";
+
+    private static final ThreadLocal<DirtyCheck> CALL_SCOPE = new ThreadLocal<>();
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public EntityWriteTracker(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @EventListener
+    public void onEntityChange(EntityChangeEvent event) {
+        markPendingWrites();
+    }
+
+    static void markPendingWrites() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(PENDING_WRITES_KEY)) {
+            return;
+        }
+
+        TransactionSynchronizationManager.bindResource(PENDING_WRITES_KEY, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_WRITES_KEY);
+                EntityDmlTracker.reset();
+            }
+        });
+    }
+
+    public boolean hasPendingWrites() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        if (TransactionSynchronizationManager.hasResource(PENDING_WRITES_KEY)) {
+            return true;
+        }
+        // 현재 스레드에 묶인 EntityManager 가 없으면(새로 만들지 않는다) 변경도 없다
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+        if (holder == null) {
+            return false;
+        }
+        EntityManager entityManager = holder.getEntityManager();
+        DirtyCheck scope = CALL_SCOPE.get();
+        if (scope != null && scope.entityManager == entityManager) {
+            return scope.dirty;
+        }
+        boolean dirty = entityManager.unwrap(Session.class).isDirty();
+        if (scope != null) {
+            // REQUIRES_NEW 로 세션이 바뀌면 그 세션으로 다시 확인한다
+            scope.entityManager = entityManager;
+            scope.dirty = dirty;
+        }
+        return dirty;
+    }
+
+    /**
+     * 저장소 메서드 한 번을 감싼다. 그 안의 hasPendingWrites 는 세션 dirty check 결과를 재사용한다.
+     * @return 바깥 범위를 새로 열었으면 true (endCallScope 에 넘길 것)
+     */
+    public static boolean beginCallScope() {
+        if (CALL_SCOPE.get() != null) {
+            return false;
+        }
+        CALL_SCOPE.set(new DirtyCheck());
+        return true;
+    }
+
+    public static void endCallScope(boolean began) {
+        if (began) {
+            CALL_SCOPE.remove();
+        }
+    }
+
+    private static final class DirtyCheck {
+        private EntityManager entityManager;
+        private boolean dirty;
+    }
+}
@@ -0,0 +1,190 @@
+package study.querydsl.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 쿼리를 별도 스레드 + 별도 읽기 전용 트랜잭션(커넥션)에서 실행한다.
+ * 동시 실행 수는 max-concurrency 로 제한하고, 꽉 차 있으면 null 을 돌려줘서 호출한 쪽이 순차 실행하게 한다.
+ * 커넥션 풀(Hikari)에 놀고 있는 커넥션이 없거나 커넥션을 기다리는 스레드가 있어도 null.
+ * 요청 하나가 커넥션을 두 개 잡으므로 풀이 바쁠 때 병렬로 돌리면 다른 요청의 대기만 늘어난다.
+ * (replica 라우팅을 쓰면 primary 풀 기준으로 판단한다)
+ * 작업 스레드가 실행한 SQL 수와 커넥션 대기 시간은 join 한 스레드(요청)의 QueryCounter 에 더한다.
+ */
+@Slf4j
+@Component
+public class ParallelQueryExecutor {
+
+    private final boolean enabled;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final EntityWriteTracker writeTracker;
+    private final HikariDataSource pool;
+
+    // Hikari 기본 maximum-pool-size 는 10. 동시 실행 수는 그보다 충분히 작게 둔다.
+    public ParallelQueryExecutor(@Value("${member.search.parallel-count.enabled:false}") boolean enabled,
+                                 @Value("${member.search.parallel-count.max-concurrency:4}") int maxConcurrency,
+                                 PlatformTransactionManager transactionManager,
+                                 EntityWriteTracker writeTracker,
+                                 DataSource dataSource) {
+        this.enabled = enabled;
+        this.pool = hikariPool(dataSource);
+        this.permits = new Semaphore(maxConcurrency);
+        this.executor = createExecutor(maxConcurrency);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.writeTracker = writeTracker;
+    }
+
+    // JDK 21 이상이면 가상 스레드, 아니면 max-concurrency 크기의 고정 스레드 풀 (어느 쪽이든 동시 실행 수는 permits 로 제한)
+    private static ExecutorService createExecutor(int maxConcurrency) {
+        try {
+            Method virtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreadExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger sequence = new AtomicInteger();
+            return Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+                Thread thread = new Thread(runnable, "parallel-query-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // p6spy/LazyConnectionDataSourceProxy 로 감싸져 있어도 unwrap 으로 찾는다. 못 찾으면 permits 로만 제한한다.
+    private static HikariDataSource hikariPool(DataSource dataSource) {
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class);
+            }
+        } catch (SQLException e) {
+            log.warn("cannot unwrap HikariDataSource, parallel queries are limited by max-concurrency only", e);
+        }
+        return null;
+    }
+
+    /**
+     * @return 실행할 수 없으면 (꺼져 있거나, 현재 트랜잭션에 커밋 안 된 변경이 있거나, 커넥션 풀이 바쁘거나, 포화 상태) null
+     */
+    public <T> Future<T> trySubmit(Supplier<T> query) {
+        // 다른 커넥션에서는 현재 트랜잭션의 커밋 안 된 변경이 안 보인다.
+        if (!enabled || writeTracker.hasPendingWrites() || !poolHasIdleConnection() || !permits.tryAcquire()) {
+            return null;
+        }
+
+        MeasuredQuery<T> task = new MeasuredQuery<>(() -> {
+            try {
+                return readOnlyTransaction.execute(status -> query.get());
+            } finally {
+                permits.release();
+            }
+        });
+        try {
+            executor.execute(task);
+            return task;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return null;
+        }
+    }
+
+    private boolean poolHasIdleConnection() {
+        // 풀은 첫 커넥션을 얻을 때 만들어진다
+        HikariPoolMXBean poolBean = pool != null ? pool.getHikariPoolMXBean() : null;
+        return poolBean == null
+                || (poolBean.getThreadsAwaitingConnection() == 0 && poolBean.getIdleConnections() > 0);
+    }
+
+    /**
+     * 결과를 기다린다. trySubmit 으로 받은 Future 면 작업 스레드의 SQL 수/커넥션 대기 시간을 현재 스레드에 더한다.
+     * (join 하지 않고 버린 쿼리는 요청에 더해지지 않는다)
+     */
+    public static <T> T join(Future<T> future) {
+        try {
+            T result = future.get();
+            attributeToCaller(future);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("parallel query interrupted", e);
+        } catch (ExecutionException e) {
+            attributeToCaller(future);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void attributeToCaller(Future<?> future) {
+        if (future instanceof MeasuredQuery) {
+            ((MeasuredQuery<?>) future).measurement.attributeToCaller();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class MeasuredQuery<T> extends FutureTask<T> {
+
+        private final Measurement measurement;
+
+        MeasuredQuery(Callable<T> query) {
+            this(query, new Measurement());
+        }
+
+        private MeasuredQuery(Callable<T> query, Measurement measurement) {
+            super(() -> measurement.measure(query));
+            this.measurement = measurement;
+        }
+    }
+
+    // 결과가 정해지기 전에 기록하므로 Future.get() 이후에 읽으면 값이 보인다
+    private static final class Measurement {
+
+        private long statements;
+        private long connectionWaitNanos;
+        private boolean attributed;
+
+        <T> T measure(Callable<T> query) throws Exception {
+            long statementsBefore = QueryCounter.statements();
+            long connectionWaitBefore = QueryCounter.connectionWaitNanos();
+            try {
+                return query.call();
+            } finally {
+                statements = QueryCounter.statements() - statementsBefore;
+                connectionWaitNanos = QueryCounter.connectionWaitNanos() - connectionWaitBefore;
+            }
+        }
+
+        synchronized void attributeToCaller() {
+            if (!attributed) {
+                attributed = true;
+                QueryCounter.add(statements, connectionWaitNanos);
+            }
+        }
+    }
+}
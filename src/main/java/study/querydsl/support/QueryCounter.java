@@ -0,0 +1,41 @@
+package study.querydsl.support;
+
+/**
+ * 스레드별 누적 카운터. (실행된 SQL 수, 커넥션 획득 대기 시간)
+ * 값은 계속 증가만 하므로 구간 측정은 시작/끝 값의 차이로 한다.
+ */
+public final class QueryCounter {
+
+    private static final ThreadLocal<Counters> CURRENT = ThreadLocal.withInitial(Counters::new);
+
+    private QueryCounter() {
+    }
+
+    public static long statements() {
+        return CURRENT.get().statements;
+    }
+
+    public static long connectionWaitNanos() {
+        return CURRENT.get().connectionWaitNanos;
+    }
+
+    static void statementPrepared() {
+        CURRENT.get().statements++;
+    }
+
+    static void connectionAcquired(long waitNanos) {
+        CURRENT.get().connectionWaitNanos += waitNanos;
+    }
+
+    // 다른 스레드에서 대신 실행한 몫을 현재 스레드에 더한다 (ParallelQueryExecutor)
+    static void add(long statements, long connectionWaitNanos) {
+        Counters counters = CURRENT.get();
+        counters.statements += statements;
+        counters.connectionWaitNanos += connectionWaitNanos;
+    }
+
+    private static class Counters {
+        private long statements;
+        private long connectionWaitNanos;
+    }
+}
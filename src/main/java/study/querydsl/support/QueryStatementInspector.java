@@ -0,0 +1,41 @@
+package study.querydsl.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.context.ApplicationEventPublisher;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hibernate 가 준비하는 모든 SQL 을 거쳐간다. 스레드별 SQL 수를 QueryCounter 에 세고 StatementBudgetGuard 상한을 검사한다.
+ * 벌크 update/delete 는 엔티티 리스너가 호출되지 않으므로 여기서 EntityChangeEvent(BULK) 를 발행한다.
+ */
+public class QueryStatementInspector implements StatementInspector {
+
+    private static final Pattern BULK_DML = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)*(?:update|delete\\s+from|insert\\s+into)\\s+(member|team)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public QueryStatementInspector(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        QueryCounter.statementPrepared();
+        StatementBudgetGuard.check(sql);
+        if (!EntityDmlTracker.isExecutingEntityDml()) {
+            Matcher matcher = BULK_DML.matcher(sql);
+            if (matcher.find()) {
+                Class<?> entityType = "member".equalsIgnoreCase(matcher.group(1)) ? Member.class : Team.class;
+                eventPublisher.publishEvent(EntityChangeEvent.bulk(entityType));
+            }
+        }
+        return sql;
+    }
+}
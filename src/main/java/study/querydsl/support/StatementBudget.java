@@ -0,0 +1,17 @@
+package study.querydsl.support;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 요청 하나가 실행할 수 있는 SQL 수의 상한.
+ * 컨트롤러 메서드(또는 클래스)에 붙이며 member.statement-budget.mode 가 WARN/FAIL 일 때만 검사한다.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface StatementBudget {
+
+    int value();
+}
@@ -0,0 +1,8 @@
+package study.querydsl.support;
+
+public class StatementBudgetExceededException extends RuntimeException {
+
+    public StatementBudgetExceededException(String name, int maxStatements, String sql) {
+        super(name + " exceeded its statement budget of " + maxStatements + " at: " + sql);
+    }
+}
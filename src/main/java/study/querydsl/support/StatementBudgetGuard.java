@@ -0,0 +1,84 @@
+package study.querydsl.support;
+
+import java.util.function.Supplier;
+
+/**
+ * 현재 스레드의 구간(요청 등)에 SQL 수 상한을 건다.
+ * FAIL 모드는 상한을 넘는 SQL 이 실행되기 직전에 StatementBudgetExceededException 을 던지고,
+ * WARN 모드는 end() 의 반환값으로 호출자가 판단한다.
+ * 캐시/인덱스 적재처럼 요청과 상관없이 가끔 끼어드는 SQL 은 exempt 로 감싸서 상한에서 뺀다.
+ */
+public final class StatementBudgetGuard {
+
+    public enum Mode {
+        OFF, WARN, FAIL
+    }
+
+    private static final ThreadLocal<Budget> CURRENT = new ThreadLocal<>();
+
+    private StatementBudgetGuard() {
+    }
+
+    public static void begin(String name, int maxStatements, Mode mode) {
+        CURRENT.set(new Budget(name, maxStatements, mode, QueryCounter.statements()));
+    }
+
+    /**
+     * @return 구간 동안 실행된 SQL 수. 진행 중인 구간이 없으면 0
+     */
+    public static long end() {
+        Budget budget = CURRENT.get();
+        if (budget == null) {
+            return 0;
+        }
+        CURRENT.remove();
+        return QueryCounter.statements() - budget.baseline;
+    }
+
+    /**
+     * work 가 실행한 SQL 은 현재 구간의 상한 검사와 end() 의 반환값에서 뺀다.
+     */
+    public static <T> T exempt(Supplier<T> work) {
+        Budget budget = CURRENT.get();
+        if (budget == null) {
+            return work.get();
+        }
+        long before = QueryCounter.statements();
+        budget.exemptDepth++;
+        try {
+            return work.get();
+        } finally {
+            budget.exemptDepth--;
+            budget.baseline += QueryCounter.statements() - before;
+        }
+    }
+
+    // QueryStatementInspector 에서 SQL 마다 호출 (QueryCounter 증가 후)
+    static void check(String sql) {
+        Budget budget = CURRENT.get();
+        if (budget == null || budget.mode != Mode.FAIL || budget.failed || budget.exemptDepth > 0) {
+            return;
+        }
+        if (QueryCounter.statements() - budget.baseline > budget.maxStatements) {
+            // 예외 처리 중 실행되는 SQL 때문에 다시 던지지 않도록 한 번만
+            budget.failed = true;
+            throw new StatementBudgetExceededException(budget.name, budget.maxStatements, sql);
+        }
+    }
+
+    private static class Budget {
+        private final String name;
+        private final int maxStatements;
+        private final Mode mode;
+        private long baseline;
+        private int exemptDepth;
+        private boolean failed;
+
+        Budget(String name, int maxStatements, Mode mode, long baseline) {
+            this.name = name;
+            this.maxStatements = maxStatements;
+            this.mode = mode;
+            this.baseline = baseline;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package study.querydsl.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 요청 단위로 StatementBudgetGuard 구간을 연다.
+ * 상한은 @StatementBudget, 없으면 defaultMaxStatements (0 이하면 검사하지 않음).
+ * open-in-view 상태의 지연 로딩도 같은 스레드에서 일어나므로 함께 센다.
+ */
+@Slf4j
+public class StatementBudgetInterceptor implements HandlerInterceptor {
+
+    private static final String ACTIVE = StatementBudgetInterceptor.class.getName() + ".ACTIVE";
+
+    private final StatementBudgetGuard.Mode mode;
+    private final int defaultMaxStatements;
+
+    public StatementBudgetInterceptor(StatementBudgetGuard.Mode mode, int defaultMaxStatements) {
+        this.mode = mode;
+        this.defaultMaxStatements = defaultMaxStatements;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (mode == StatementBudgetGuard.Mode.OFF || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        int maxStatements = maxStatements((HandlerMethod) handler);
+        if (maxStatements > 0) {
+            StatementBudgetGuard.begin(request.getRequestURI(), maxStatements, mode);
+            request.setAttribute(ACTIVE, maxStatements);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Integer maxStatements = (Integer) request.getAttribute(ACTIVE);
+        if (maxStatements == null) {
+            return;
+        }
+        request.removeAttribute(ACTIVE);
+        long used = StatementBudgetGuard.end();
+        if (used > maxStatements && mode == StatementBudgetGuard.Mode.WARN) {
+            log.warn("{} {} issued {} statements (budget {})", request.getMethod(), request.getRequestURI(), used, maxStatements);
+        }
+    }
+
+    private int maxStatements(HandlerMethod handlerMethod) {
+        StatementBudget budget = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getMethod(), StatementBudget.class);
+        if (budget == null) {
+            budget = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), StatementBudget.class);
+        }
+        return budget != null ? budget.value() : defaultMaxStatements;
+    }
+}
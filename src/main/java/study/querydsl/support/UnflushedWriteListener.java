@@ -0,0 +1,78 @@
+package study.querydsl.support;
+
+import org.hibernate.HibernateException;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.DeleteEvent;
+import org.hibernate.event.spi.DeleteEventListener;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.MergeEvent;
+import org.hibernate.event.spi.MergeEventListener;
+import org.hibernate.event.spi.PersistEvent;
+import org.hibernate.event.spi.PersistEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * persist/merge/remove 를 호출한 시점(플러시 전)에 EntityWriteTracker 에 커밋 전 변경을 표시한다.
+ * 엔티티 이벤트는 플러시 때에야 오므로 그 사이를 메운다. 관리 중인 엔티티의 필드 변경만 세션 dirty check 로 남는다.
+ */
+public class UnflushedWriteListener implements Integrator,
+        PersistEventListener, MergeEventListener, DeleteEventListener {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.prependListeners(EventType.PERSIST, this);
+        registry.prependListeners(EventType.MERGE, this);
+        registry.prependListeners(EventType.DELETE, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    @Override
+    public void onPersist(PersistEvent event) throws HibernateException {
+        mark(event.getObject());
+    }
+
+    @Override
+    public void onPersist(PersistEvent event, Map createdAlready) throws HibernateException {
+        mark(event.getObject());
+    }
+
+    @Override
+    public void onMerge(MergeEvent event) throws HibernateException {
+        mark(event.getOriginal());
+    }
+
+    @Override
+    public void onMerge(MergeEvent event, Map copiedAlready) throws HibernateException {
+        mark(event.getOriginal());
+    }
+
+    @Override
+    public void onDelete(DeleteEvent event) throws HibernateException {
+        mark(event.getObject());
+    }
+
+    @Override
+    public void onDelete(DeleteEvent event, Set transientEntities) throws HibernateException {
+        mark(event.getObject());
+    }
+
+    // 프록시는 엔티티의 하위 클래스다
+    private static void mark(Object entity) {
+        if (entity instanceof Member || entity instanceof Team) {
+            EntityWriteTracker.markPendingWrites();
+        }
+    }
+}
@@ -25,6 +25,8 @@ import static com.querydsl.jpa.JPAExpressions.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static study.querydsl.entity.QMember.*;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.support.StatementAssertions.assertMaxStatements;
+import static study.querydsl.support.StatementAssertions.countStatements;
 
 @SpringBootTest
 @Transactional
@@ -260,6 +262,26 @@ public class QueryDslBasicTest {
         assertThat(result).extracting("username").containsExactly("memberA", "memberB");
     }
 
+    /*
+        fetch join 없이 팀을 지연 로딩해도 batch fetch 로 팀 수와 관계없이 한 번에 읽는다
+     */
+    @Test
+    public void lazyTeamBatchFetch() {
+        em.flush();
+        em.clear();
+
+        List<Member> result = assertMaxStatements(1, () -> jpaQueryFactory
+                .selectFrom(member)
+                .where(member.username.in("memberA", "memberB", "memberC", "memberD"))
+                .fetch());
+
+        assertThat(countStatements(() -> result.forEach(m -> {
+            if (m.getTeam() != null) {
+                m.getTeam().getName();
+            }
+        }))).isLessThanOrEqualTo(1);
+    }
+
     /*
         세타 조인
         회원의 이름이 팀 이름과 같은 회원 조회
@@ -323,13 +345,14 @@ public class QueryDslBasicTest {
         em.flush();
         em.clear();
 
-        Member m = jpaQueryFactory.selectFrom(member)
+        Member m = assertMaxStatements(1, () -> jpaQueryFactory.selectFrom(member)
                 .join(member.team, team).fetchJoin()
                 .where(member.username.eq("memberA"))
-                .fetchOne();
+                .fetchOne());
 
         boolean loaded = emf.getPersistenceUnitUtil().isLoaded(m.getTeam());
         assertThat(loaded).as("페치 조인 미적용").isTrue();
+        assertThat(countStatements(() -> m.getTeam().getName())).isEqualTo(0);
     }
 
     @Test
@@ -0,0 +1,98 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberTeamDtoMessageConverterTest {
+
+    private static final Type MEMBER_TEAM_LIST = new ParameterizedTypeReference<List<MemberTeamDto>>() {
+    }.getType();
+
+    MemberTeamDtoMessageConverter converter = new MemberTeamDtoMessageConverter();
+
+    List<MemberTeamDto> rows = Arrays.asList(
+            new MemberTeamDto(1L, "member1", 10, 100L, "teamA"),
+            new MemberTeamDto(2L, "멤버2", 20, 100L, "teamA"),
+            new MemberTeamDto(3L, "member,\"3\"", 30, 200L, "teamA"),
+            new MemberTeamDto(4L, null, 40, null, null));
+
+    @Test
+    public void columnarRoundTrip() throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(rows, MEMBER_TEAM_LIST, MemberTeamDtoMessageConverter.COLUMNAR, output);
+
+        List<MemberTeamDto> decoded = converter.read(MEMBER_TEAM_LIST, null, new MockHttpInputMessage(output.getBodyAsBytes()));
+
+        assertThat(decoded).isEqualTo(rows);
+    }
+
+    @Test
+    public void teamNamesAreWrittenOncePerTeam() throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(rows, MEMBER_TEAM_LIST, MemberTeamDtoMessageConverter.COLUMNAR, output);
+
+        String body = new String(output.getBodyAsBytes(), StandardCharsets.ISO_8859_1);
+        // teamA 는 팀 id 100, 200 두 개 -> 사전에 두 번
+        assertThat(body.split("teamA", -1)).hasSize(3);
+    }
+
+    @Test
+    public void columnarWritesAreBuffered() throws IOException {
+        int[] writes = new int[1];
+        ByteArrayOutputStream target = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(int b) {
+                writes[0]++;
+                super.write(b);
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writes[0]++;
+                super.write(b, off, len);
+            }
+        };
+
+        MemberColumnarCodec.encode(rows, target);
+
+        // 응답 스트림에는 버퍼 단위로 한 번만 쓴다
+        assertThat(writes[0]).isEqualTo(1);
+        assertThat(MemberColumnarCodec.decode(new ByteArrayInputStream(target.toByteArray()))).isEqualTo(rows);
+    }
+
+    @Test
+    public void csv() throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(rows, MEMBER_TEAM_LIST, MemberTeamDtoMessageConverter.CSV, output);
+
+        assertThat(output.getBodyAsString()).isEqualTo(
+                "memberId,username,age,teamId,teamName\r\n"
+                        + "1,member1,10,100,teamA\r\n"
+                        + "2,멤버2,20,100,teamA\r\n"
+                        + "3,\"member,\"\"3\"\"\",30,200,teamA\r\n"
+                        + "4,,40,,\r\n");
+    }
+
+    @Test
+    public void onlyListOfMemberTeamDto() {
+        Type strings = new ParameterizedTypeReference<List<String>>() {
+        }.getType();
+
+        assertThat(converter.canWrite(MEMBER_TEAM_LIST, List.class, MemberTeamDtoMessageConverter.CSV)).isTrue();
+        assertThat(converter.canWrite(strings, List.class, MemberTeamDtoMessageConverter.CSV)).isFalse();
+        assertThat(converter.canRead(MEMBER_TEAM_LIST, null, MemberTeamDtoMessageConverter.CSV)).isFalse();
+    }
+}
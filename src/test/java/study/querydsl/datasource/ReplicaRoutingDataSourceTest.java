@@ -0,0 +1,104 @@
+package study.querydsl.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 각각 다른 in-memory H2 를 primary/replica 로 두고 DATABASE() 로 어디로 갔는지 본다.
+class ReplicaRoutingDataSourceTest {
+
+    private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+    ReplicaLagMonitor monitor;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate readOnly;
+    TransactionTemplate readWrite;
+
+    @BeforeEach
+    public void before() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica1", h2("replica1"));
+        replicas.put("replica2", h2("replica2"));
+        DataSource primary = h2("primary");
+        monitor = new ReplicaLagMonitor(primary, replicas, Duration.ofSeconds(5), Clock.fixed(NOW, Clock.systemUTC().getZone()));
+
+        for (DataSource each : new DataSource[]{primary, replicas.get("replica1"), replicas.get("replica2")}) {
+            new JdbcTemplate(each).execute("create table if not exists replication_heartbeat (id int primary key, updated_at timestamp not null)");
+        }
+        heartbeat("replica1", NOW.minusSeconds(1));
+        heartbeat("replica2", NOW.minusSeconds(2));
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(monitor));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        monitor.close();
+    }
+
+    @Test
+    public void readOnlyTransactionsRoundRobinOverReplicas() {
+        monitor.refresh();
+
+        assertThat(readOnly.execute(status -> database())).isEqualTo("REPLICA1");
+        assertThat(readOnly.execute(status -> database())).isEqualTo("REPLICA2");
+        assertThat(readOnly.execute(status -> database())).isEqualTo("REPLICA1");
+        assertThat(readWrite.execute(status -> database())).isEqualTo("PRIMARY");
+        // 트랜잭션 밖은 primary
+        assertThat(database()).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    public void laggingReplicaIsSkipped() {
+        heartbeat("replica2", NOW.minusSeconds(30));
+        monitor.refresh();
+
+        assertThat(monitor.lags().get("replica2")).isEqualTo(Duration.ofSeconds(30));
+        assertThat(readOnly.execute(status -> database())).isEqualTo("REPLICA1");
+        assertThat(readOnly.execute(status -> database())).isEqualTo("REPLICA1");
+    }
+
+    @Test
+    public void fallsBackToPrimaryWhenNoReplicaIsUsable() {
+        heartbeat("replica1", NOW.minusSeconds(30));
+        new JdbcTemplate(monitor.getReplicas().get("replica2")).execute("drop table replication_heartbeat");
+        monitor.refresh();
+
+        assertThat(monitor.lags().get("replica2")).isNull();
+        assertThat(readOnly.execute(status -> database())).isEqualTo("PRIMARY");
+    }
+
+    private String database() {
+        return jdbcTemplate.queryForObject("select database()", String.class);
+    }
+
+    private void heartbeat(String replica, Instant at) {
+        new JdbcTemplate(monitor.getReplicas().get(replica))
+                .update("merge into replication_heartbeat key (id) values (1, ?)", Timestamp.from(at));
+    }
+
+    private static DataSource h2(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -0,0 +1,109 @@
+package study.querydsl.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchCache;
+import study.querydsl.repository.TeamNameDictionary;
+
+import javax.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// JpaTransactionManager 를 거쳐도 라우팅되는지 본다.
+// replica 에는 member 테이블과 replica 에만 있는 회원 하나만 있다. 사전/인덱스가 replica 에서 읽으면 팀 테이블이 없어 실패한다.
+@SpringBootTest(properties = {
+        "member.datasource.replicas[0].url=jdbc:h2:mem:jpaReplica;DB_CLOSE_DELAY=-1",
+        "member.datasource.lag-check-interval=1h",
+        "member.datasource.max-lag=1s"
+})
+class ReplicaRoutingJpaTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ReplicaLagMonitor monitor;
+
+    @Autowired
+    TeamNameDictionary teamNameDictionary;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberSearchCache memberSearchCache;
+
+    TransactionTemplate readOnly;
+
+    JdbcTemplate replica;
+
+    @BeforeEach
+    public void before() {
+        replica = new JdbcTemplate(monitor.getReplicas().values().iterator().next());
+        replica.execute("create table if not exists replication_heartbeat (id int primary key, updated_at timestamp not null)");
+        replica.execute("create table if not exists member"
+                + " (member_id bigint primary key, username varchar(255), age int not null, team_id bigint)");
+        replica.update("merge into member key (member_id) values (-1, 'replicaOnly', 5000, null)");
+        heartbeat();
+
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    private void heartbeat() {
+        replica.update("merge into replication_heartbeat key (id) values (1, ?)", Timestamp.from(Instant.now()));
+        monitor.refresh();
+    }
+
+    @Test
+    public void readOnlyJpaTransactionReadsReplica() {
+        assertThat(readOnly.execute(status -> database())).isEqualTo("JPAREPLICA");
+        assertThat(new TransactionTemplate(transactionManager).execute(status -> database())).isNotEqualTo("JPAREPLICA");
+    }
+
+    @Test
+    public void rebuildReadsPrimary() {
+        assertThat(new RebuildTransactionTemplate(transactionManager).execute(status -> database()))
+                .isNotEqualTo("JPAREPLICA");
+
+        teamNameDictionary.invalidate();
+        assertThat(readOnly.execute(status -> teamNameDictionary.snapshot())).isNotNull();
+    }
+
+    @Test
+    public void cacheMissInReadOnlyTransactionReadsReplica() throws InterruptedException {
+        memberSearchCache.invalidateAll();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(5000);
+
+        assertThat(readOnly.execute(status -> {
+            assertThat(memberRepository.search(condition)).extracting("username").containsExactly("replicaOnly");
+            return ReplicaRoutingDataSource.isReadingReplica();
+        })).isTrue();
+
+        // replica 에서 읽은 결과는 max-lag(1s) 까지만 캐시에 남는다
+        replica.update("update member set username = 'replicaOnlyRenamed' where member_id = -1");
+        assertThat(readOnly.execute(status -> memberRepository.search(condition)))
+                .extracting("username").containsExactly("replicaOnly");
+        Thread.sleep(1200);
+        heartbeat();
+        assertThat(readOnly.execute(status -> memberRepository.search(condition)))
+                .extracting("username").containsExactly("replicaOnlyRenamed");
+    }
+
+    private String database() {
+        return (String) em.createNativeQuery("select database()").getSingleResult();
+    }
+}
@@ -0,0 +1,61 @@
+package study.querydsl.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class RepositoryMetricsAspectTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    RepositoryMetricsEndpoint endpoint;
+
+    @Test
+    public void recordsLatencyRowsAndStatements() {
+        Team team = new Team("metricsTeam");
+        em.persist(team);
+        em.persist(new Member("metricsMember", 10, team));
+        em.flush();
+
+        List<Member> result = memberJpaRepository.findByUsername("metricsMember");
+        assertThat(result).hasSize(1);
+
+        Timer timer = meterRegistry.get(RepositoryMetricsAspect.INVOCATIONS)
+                .tag("repository", "MemberJpaRepository").tag("method", "findByUsername").timer();
+        assertThat(timer.count()).isGreaterThanOrEqualTo(1);
+
+        DistributionSummary rows = meterRegistry.get(RepositoryMetricsAspect.ROWS)
+                .tag("repository", "MemberJpaRepository").tag("method", "findByUsername").summary();
+        assertThat(rows.max()).isGreaterThanOrEqualTo(1);
+
+        DistributionSummary statements = meterRegistry.get(RepositoryMetricsAspect.STATEMENTS)
+                .tag("repository", "MemberJpaRepository").tag("method", "findByUsername").summary();
+        assertThat(statements.max()).isGreaterThanOrEqualTo(1);
+
+        Map<String, Object> summary = endpoint.repositories().get("MemberJpaRepository.findByUsername");
+        assertThat(summary).containsKeys("count", "p99Ms", "meanRows", "meanStatements");
+    }
+}
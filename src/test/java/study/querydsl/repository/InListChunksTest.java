@@ -0,0 +1,45 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InListChunksTest {
+
+    @Test
+    public void removesDuplicates() {
+        assertThat(InListChunks.of(Arrays.asList(1L, 2L, 3L, 2L, 5L)))
+                .containsExactly(Arrays.asList(1L, 2L, 3L, 5L));
+        assertThat(InListChunks.of(new ArrayList<Long>())).isEmpty();
+    }
+
+    @Test
+    public void splitsAtMaxSize() {
+        List<Long> values = values(1300);
+
+        List<List<Long>> chunks = InListChunks.of(values);
+
+        assertThat(chunks).extracting(List::size).containsExactly(1000, 300);
+        assertThat(chunks.get(1).get(299)).isEqualTo(1299L);
+    }
+
+    @Test
+    public void singleRejectsOversizeList() {
+        assertThat(InListChunks.single(values(1000))).hasSize(1000);
+        assertThatThrownBy(() -> InListChunks.single(values(1001)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<Long> values(int size) {
+        List<Long> values = new ArrayList<>();
+        for (long i = 0; i < size; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,155 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Predicate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.CommittedData;
+import study.querydsl.support.DerivedDataTest;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.support.StatementAssertions.countStatements;
+
+// 목록은 커밋 후에 버려지므로 @Transactional 없이 트랜잭션을 직접 나눈다.
+// 다른 테스트 데이터와 겹치지 않게 2000 이상의 나이를 먼저 비교한다.
+@DerivedDataTest
+class InMemoryMemberPredicateExecutorTest {
+
+    @RegisterExtension
+    CommittedData data = new CommittedData("memMember", "memTeam");
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    InMemoryMemberPredicateExecutor executor;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Test
+    public void evaluatesPredicateInMemory() {
+        persistMembers();
+        Predicate predicate = member.age.between(2000, 2100)
+                .and(member.username.startsWith("memMember"))
+                .and(member.team.name.eq("memTeamA"));
+
+        List<Member> found = executor.findAll(predicate);
+        assertThat(found).extracting("username").containsExactlyInAnyOrder("memMember1", "memMember2");
+        assertThat(found).extracting("username")
+                .containsExactlyInAnyOrderElementsOf(usernames(memberRepository.findAll(predicate)));
+
+        // 캐시한 목록과 컴파일된 평가기를 다시 쓴다
+        assertThat(countStatements(() -> executor.findAll(member.age.between(2000, 2015)))).isEqualTo(0);
+        assertThat(executor.count(member.age.between(2000, 2100).and(member.team.name.eq("memTeamB")))).isEqualTo(1);
+    }
+
+    @Test
+    public void committedChangesAreVisible() {
+        Long[] ids = persistMembers();
+        Predicate predicate = member.age.between(2000, 2100).and(member.team.name.eq("memTeamA"));
+        assertThat(executor.count(predicate)).isEqualTo(2);
+
+        data.execute(status -> {
+            em.find(Member.class, ids[0]).changeTeam(em.find(Team.class, ids[1]));
+            // 커밋 전 변경이 있으면 같은 트랜잭션의 DB 조회로 답한다
+            assertThat(executor.count(predicate)).isEqualTo(1);
+            return null;
+        });
+
+        assertThat(executor.count(predicate)).isEqualTo(1);
+    }
+
+    @Test
+    public void entityComparisonsUseDatabase() {
+        Long[] ids = persistMembers();
+        // 캐시를 채워 둔다
+        executor.count(member.age.between(2000, 2100));
+
+        Team teamB = data.execute(status -> em.find(Team.class, ids[1]));
+        Member member1 = data.execute(status -> em.find(Member.class, ids[0]));
+
+        assertThat(executor.findAll(member.team.eq(teamB))).extracting("username").containsExactly("memMember3");
+        assertThat(executor.count(member.eq(member1))).isEqualTo(1);
+        assertThat(executor.count(member.age.between(2000, 2100).and(member.team.in(teamB)))).isEqualTo(1);
+        // 참조가 있는지만 보는 조건은 메모리에서 평가한다
+        assertThat(countStatements(() -> executor.count(member.age.between(2000, 2100).and(member.team.isNotNull()))))
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void detectsEntityComparisons() {
+        assertThat(InMemoryMemberPredicateExecutor.comparesEntities(member.age.eq(10).and(member.team.name.eq("a")))).isFalse();
+        assertThat(InMemoryMemberPredicateExecutor.comparesEntities(member.team.id.eq(1L))).isFalse();
+        assertThat(InMemoryMemberPredicateExecutor.comparesEntities(member.team.isNull())).isFalse();
+        assertThat(InMemoryMemberPredicateExecutor.comparesEntities(member.age.eq(10).or(member.team.eq(team)))).isTrue();
+
+        // BooleanBuilder 로 조립한 조건 (중첩 포함)
+        BooleanBuilder builder = new BooleanBuilder(member.age.eq(10));
+        assertThat(InMemoryMemberPredicateExecutor.comparesEntities(builder)).isFalse();
+        builder.and(new BooleanBuilder(member.team.eq(team)));
+        assertThat(InMemoryMemberPredicateExecutor.comparesEntities(builder)).isTrue();
+        assertThat(InMemoryMemberPredicateExecutor.comparesEntities(member.age.eq(10).and(builder))).isTrue();
+        assertThat(InMemoryMemberPredicateExecutor.comparesEntities(new BooleanBuilder())).isFalse();
+    }
+
+    @Test
+    public void entityComparisonInBooleanBuilderUsesDatabase() {
+        Long[] ids = persistMembers();
+        executor.count(member.age.between(2000, 2100));
+        Team teamB = data.execute(status -> em.find(Team.class, ids[1]));
+
+        BooleanBuilder builder = new BooleanBuilder();
+        builder.and(member.age.between(2000, 2100));
+        builder.and(member.team.eq(teamB));
+
+        assertThat(executor.findAll(builder)).extracting("username").containsExactly("memMember3");
+    }
+
+    @Test
+    public void findAllDoesNotShareCachedEntities() {
+        persistMembers();
+        Predicate predicate = member.username.eq("memMember1");
+
+        // 고쳐도 캐시한 목록에는 남지 않는다
+        executor.findAll(predicate).get(0).setAge(1);
+        assertThat(executor.findAll(predicate)).extracting("age").containsExactly(2010);
+        assertThat(countStatements(() -> executor.findAll(predicate))).isEqualTo(0);
+
+        // 쓰기 트랜잭션에서는 영속 상태의 엔티티를 돌려준다
+        data.execute(status -> {
+            Member found = executor.findAll(predicate).get(0);
+            assertThat(em.contains(found)).isTrue();
+            return null;
+        });
+    }
+
+    private Long[] persistMembers() {
+        return data.execute(status -> {
+            Team teamA = new Team("memTeamA");
+            Team teamB = new Team("memTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            Member member1 = new Member("memMember1", 2010, teamA);
+            em.persist(member1);
+            em.persist(new Member("memMember2", 2020, teamA));
+            em.persist(new Member("memMember3", 2030, teamB));
+            return new Long[]{member1.getId(), teamB.getId()};
+        });
+    }
+
+    private static List<String> usernames(Iterable<Member> members) {
+        List<String> usernames = new ArrayList<>();
+        members.forEach(m -> usernames.add(m.getUsername()));
+        return usernames;
+    }
+}
@@ -0,0 +1,136 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.CountedPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.CommittedData;
+import study.querydsl.support.DerivedDataTest;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.support.StatementAssertions.assertMaxStatements;
+
+// 인덱스는 커밋 후에 갱신되므로 @Transactional 없이 트랜잭션을 직접 나눈다.
+// 다른 테스트 데이터와 겹치지 않게 1000 이상의 나이를 쓴다.
+@DerivedDataTest
+class MemberAgeIndexTest {
+
+    @RegisterExtension
+    CommittedData data = new CommittedData("ageMember", "ageTeam");
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberAgeIndex ageIndex;
+
+    @Autowired
+    TeamNameDictionary teamNameDictionary;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    // 시작할 때의 재로딩은 백그라운드에서 돈다. 이벤트 반영을 보려면 먼저 다 읽힌 상태여야 한다.
+    @BeforeEach
+    public void before() {
+        ageIndex.load();
+    }
+
+    @Test
+    public void countsAgeRangeAndTeamIntersection() {
+        persistMembers();
+
+        assertThat(count(1000, 1100, null)).isEqualTo(4);
+        assertThat(count(1015, 1025, null)).isEqualTo(2);
+        assertThat(count(1015, null, "ageTeamA")).isEqualTo(2);
+        assertThat(count(null, null, "ageTeamB")).isEqualTo(1);
+        assertThat(count(1000, 1100, "ageTeamNone")).isEqualTo(0);
+
+        // username 조건은 인덱스로 셀 수 없다
+        MemberSearchCondition withUsername = condition(1000, 1100, null);
+        withUsername.setUsername("ageMember1");
+        assertThat(ageIndex.count(MemberSearchKey.of(withUsername), teamNameDictionary.snapshot())).isNull();
+    }
+
+    @Test
+    public void followsCommittedChanges() {
+        Long[] ids = persistMembers();
+
+        data.execute(status -> {
+            em.find(Member.class, ids[0]).setAge(1050);
+            em.remove(em.find(Member.class, ids[1]));
+            return null;
+        });
+
+        assertThat(count(1000, 1100, null)).isEqualTo(3);
+        assertThat(count(1050, 1050, "ageTeamA")).isEqualTo(1);
+        assertThat(count(1015, 1025, null)).isEqualTo(1);
+    }
+
+    @Test
+    public void bulkUpdateReloadsInBackground() throws Exception {
+        persistMembers();
+
+        synchronized (ageIndex) {
+            data.execute(status -> new JPAQueryFactory(em)
+                    .update(member)
+                    .set(member.age, 1040)
+                    .where(member.username.eq("ageMember4"))
+                    .execute());
+            // 재로딩이 끝날 때까지는 DB 에서 세도록 null
+            assertThat(count(1000, 1100, null)).isNull();
+        }
+        assertThat(MemberSnapshotTest.await(() -> count(1040, 1040, null))).isEqualTo(1);
+    }
+
+    @Test
+    public void searchPageComplexCountsFromIndex() {
+        persistMembers();
+        // 팀 사전은 팀이 바뀐 뒤 첫 조회 때 읽는다
+        teamNameDictionary.snapshot();
+
+        CountedPage<MemberTeamDto> page = assertMaxStatements(1, () ->
+                memberRepository.searchPageComplex(condition(1000, 1100, null), PageRequest.of(0, 2), false));
+
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.getTotalElements()).isEqualTo(4);
+    }
+
+    private Long[] persistMembers() {
+        return data.execute(status -> {
+            Team teamA = new Team("ageTeamA");
+            Team teamB = new Team("ageTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            Member member1 = new Member("ageMember1", 1010, teamA);
+            Member member2 = new Member("ageMember2", 1020, teamA);
+            em.persist(member1);
+            em.persist(member2);
+            em.persist(new Member("ageMember3", 1030, teamA));
+            em.persist(new Member("ageMember4", 1020, teamB));
+            return new Long[]{member1.getId(), member2.getId()};
+        });
+    }
+
+    private Long count(Integer ageGoe, Integer ageLoe, String teamName) {
+        return ageIndex.count(MemberSearchKey.of(condition(ageGoe, ageLoe, teamName)), teamNameDictionary.snapshot());
+    }
+
+    private static MemberSearchCondition condition(Integer ageGoe, Integer ageLoe, String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        condition.setTeamName(teamName);
+        return condition;
+    }
+}
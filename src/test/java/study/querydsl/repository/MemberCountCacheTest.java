@@ -0,0 +1,51 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.support.EntityWriteTracker;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberCountCacheTest {
+
+    // 트랜잭션 밖에서만 쓰므로 EntityManagerFactory 는 필요 없다
+    private static final EntityWriteTracker NO_TRANSACTION_WRITE_TRACKER = new EntityWriteTracker(null);
+
+    @Test
+    public void countIsCachedPerNormalizedCondition() {
+        MemberCountCache countCache = new MemberCountCache(true, Duration.ofMinutes(1), 100, Duration.ofSeconds(5), NO_TRANSACTION_WRITE_TRACKER);
+        AtomicInteger queries = new AtomicInteger();
+
+        MemberSearchCondition blankName = new MemberSearchCondition();
+        blankName.setUsername(" ");
+        blankName.setAgeGoe(10);
+        MemberSearchCondition noName = new MemberSearchCondition();
+        noName.setAgeGoe(10);
+
+        long first = countCache.count(MemberSearchKey.of(blankName), () -> queries.incrementAndGet() * 10L);
+        long second = countCache.count(MemberSearchKey.of(noName), () -> queries.incrementAndGet() * 10L);
+
+        assertThat(first).isEqualTo(10);
+        assertThat(second).isEqualTo(10);
+        assertThat(queries.get()).isEqualTo(1);
+
+        countCache.invalidateAll();
+        assertThat(countCache.count(MemberSearchKey.of(noName), () -> queries.incrementAndGet() * 10L)).isEqualTo(20);
+    }
+
+    @Test
+    public void expiredCountIsStillAvailableForApproximation() {
+        MemberCountCache countCache = new MemberCountCache(true, Duration.ZERO, 100, Duration.ofSeconds(5), NO_TRANSACTION_WRITE_TRACKER);
+        MemberSearchKey key = MemberSearchKey.of(new MemberSearchCondition());
+
+        countCache.count(key, () -> 42L);
+
+        MemberCountCache.CountEntry entry = countCache.peek(key);
+        assertThat(entry).isNotNull();
+        assertThat(entry.getCount()).isEqualTo(42);
+        assertThat(countCache.isFresh(entry)).isFalse();
+    }
+}
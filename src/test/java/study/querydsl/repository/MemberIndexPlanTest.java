@@ -0,0 +1,146 @@
+package study.querydsl.repository;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UsernameMatch;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 리포지토리가 실제로 실행한 SQL 을 p6spy 로 (값을 채운 채로) 잡아서 H2 EXPLAIN 에 넣고 인덱스를 타는지 확인한다.
+ */
+// SQL 주석의 JPQL 에도 ? 가 있어서 p6spy 가 값을 엉뚱한 자리에 채우므로 주석은 끈다
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.use_sql_comments=false")
+class MemberIndexPlanTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    TeamNameDictionary teamNameDictionary;
+
+    @Autowired
+    SqlRecorder sqlRecorder;
+
+    @Test
+    public void usernameUsesIndex() throws SQLException {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+
+        String plan = explain(lastQuery(() -> memberJpaRepository.search(condition)));
+
+        assertThat(plan).containsIgnoringCase("IDX_MEMBER_USERNAME");
+    }
+
+    @Test
+    public void usernamePrefixLikeUsesIndex() throws SQLException {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+
+        String sql = lastQuery(() -> memberJpaRepository.search(condition));
+
+        assertThat(sql).containsIgnoringCase("like 'member1%'");
+        assertThat(explain(sql)).containsIgnoringCase("IDX_MEMBER_USERNAME");
+    }
+
+    @Test
+    public void memberIdInUsesPrimaryKey() throws SQLException {
+        String sql = lastQuery(() -> memberJpaRepository.findAllByIds(Arrays.asList(1L, 2L, 3L)));
+
+        assertThat(sql).containsIgnoringCase("member_id in (");
+        assertThat(explain(sql)).containsIgnoringCase("PRIMARY_KEY");
+    }
+
+    @Test
+    public void ageRangeUsesIndex() throws SQLException {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(21);
+
+        String plan = explain(lastQuery(() -> memberJpaRepository.search(condition)));
+
+        assertThat(plan).containsIgnoringCase("IDX_MEMBER_AGE");
+    }
+
+    @Test
+    public void teamIdInAndAgeUsesCompositeIndex() throws SQLException {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(20);
+        // 팀 사전을 먼저 채워 두면 마지막 쿼리가 검색 쿼리다
+        assertThat(teamNameDictionary.snapshot()).isNotNull();
+
+        String sql = lastQuery(() -> memberJpaRepository.search(condition));
+
+        assertThat(sql).containsIgnoringCase("team_id in (").doesNotContainIgnoringCase("join");
+        assertThat(explain(sql)).containsIgnoringCase("IDX_MEMBER_TEAM_AGE");
+    }
+
+    @Test
+    public void teamNameJoinUsesTeamNameIndex() throws SQLException {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        String sql = lastQuery(() -> memberJpaRepository.searchEntity(condition));
+
+        assertThat(sql).containsIgnoringCase("join").containsIgnoringCase("'teamA'");
+        assertThat(explain(sql)).containsIgnoringCase("IDX_TEAM_NAME");
+    }
+
+    private String lastQuery(Runnable call) {
+        sqlRecorder.queries.clear();
+        call.run();
+        assertThat(sqlRecorder.queries).isNotEmpty();
+        // format_sql 줄바꿈을 없앤다
+        return sqlRecorder.queries.get(sqlRecorder.queries.size() - 1).replaceAll("\\s+", " ");
+    }
+
+    private String explain(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("explain " + sql)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+
+    @TestConfiguration
+    static class SqlRecorderConfig {
+
+        @Bean
+        SqlRecorder sqlRecorder() {
+            return new SqlRecorder();
+        }
+    }
+
+    // p6spy-spring-boot-starter 가 JdbcEventListener 빈을 등록해 준다
+    static class SqlRecorder extends JdbcEventListener {
+
+        final List<String> queries = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onAfterExecuteQuery(PreparedStatementInformation statementInformation, long timeElapsedNanos,
+                                        SQLException e) {
+            queries.add(statementInformation.getSqlWithValues());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package study.querydsl.repository;
 
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -10,9 +11,15 @@ import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.support.StatementAssertions.assertMaxStatements;
 
 
 @SpringBootTest
@@ -52,5 +59,76 @@ class MemberJpaRepositoryTest {
         memberTeamDtos.forEach(System.out::println);
 
         assertThat(memberTeamDtos).extracting("username").containsExactly("memberC");
+        assertThat(memberJpaRepository.searchByBuilder(condition)).extracting("username").containsExactly("memberC");
     }
-}
\ No newline at end of file
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Test
+    public void searchEntityFetchPlanTest() {
+        Team teamA = new Team("fetchPlanA");
+        Team teamB = new Team("fetchPlanB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("memberA", 10, teamA));
+        em.persist(new Member("memberB", 10, teamA));
+        em.persist(new Member("memberC", 38, teamB));
+        em.flush();
+        em.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("fetchPlanA");
+
+        List<Member> lazy = memberJpaRepository.searchEntity(condition, MemberFetchPlan.MEMBER);
+        assertThat(emf.getPersistenceUnitUtil().isLoaded(lazy.get(0).getTeam())).isFalse();
+        em.clear();
+
+        List<Member> members = memberJpaRepository.searchEntity(condition, MemberFetchPlan.TEAM_MEMBERS);
+        Team team = members.get(0).getTeam();
+        assertThat(emf.getPersistenceUnitUtil().isLoaded(team)).isTrue();
+        assertThat(Hibernate.isInitialized(team.getMemberList())).isTrue();
+        assertThat(team.getMemberList()).extracting("username").containsExactlyInAnyOrder("memberA", "memberB");
+    }
+
+    @Test
+    public void findAllByIdsKeepsRequestOrder() {
+        Member memberA = new Member("batchMemberA", 10);
+        Member memberB = new Member("batchMemberB", 20);
+        Member memberC = new Member("batchMemberC", 30);
+        em.persist(memberA);
+        em.persist(memberB);
+        em.persist(memberC);
+        em.flush();
+        em.clear();
+
+        List<Long> ids = new ArrayList<>(Arrays.asList(memberC.getId(), memberA.getId(), memberC.getId()));
+        // 없는 id 를 섞어 1000개 조각이 두 개가 되게 한다
+        for (long missing = 1; missing <= 1200; missing++) {
+            ids.add(-missing);
+        }
+        ids.add(memberB.getId());
+
+        List<Member> found = assertMaxStatements(2, () -> memberJpaRepository.findAllByIds(ids));
+
+        assertThat(found).extracting("username").containsExactly("batchMemberC", "batchMemberA", "batchMemberB");
+    }
+
+    @Test
+    public void findAllByUsernamesKeepsRequestOrder() {
+        em.persist(new Member("batchMemberA", 10));
+        em.persist(new Member("batchMemberB", 20));
+        em.persist(new Member("batchMemberB", 21));
+        em.flush();
+        em.clear();
+
+        List<Member> found = memberJpaRepository.findAllByUsernames(
+                Arrays.asList("batchMemberB", "batchMemberMissing", "batchMemberA"));
+
+        assertThat(found).extracting("username", "age")
+                .containsExactly(tuple("batchMemberB", 20), tuple("batchMemberB", 21), tuple("batchMemberA", 10));
+        assertThat(memberJpaRepository.findAllByUsernames(Collections.emptyList())).isEmpty();
+    }
+}
@@ -0,0 +1,106 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.CountedPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+// count 는 다른 커넥션에서 실행되므로 커밋된 데이터로 확인한다. (@Transactional 이면 병렬 실행을 하지 않는다)
+@SpringBootTest(properties = {
+        "member.search.parallel-count.enabled=true",
+        "member.search.count-cache.enabled=false"
+})
+class MemberParallelCountTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    public void before() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            Team teamA = new Team("parallelTeamA");
+            Team teamB = new Team("parallelTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("parallelMember" + i, 2100 + i, i % 2 == 0 ? teamA : teamB));
+            }
+            return null;
+        });
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).where(member.username.startsWith("parallelMember")).execute();
+            queryFactory.delete(team).where(team.name.startsWith("parallelTeam")).execute();
+            return null;
+        });
+    }
+
+    @Test
+    public void countsWhileFetchingContent() {
+        CountedPage<MemberTeamDto> page = memberRepository.searchPageComplex(
+                condition("parallelTeamA", 2100, 2109), PageRequest.of(0, 2), false);
+
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(page.isTotalExact()).isTrue();
+    }
+
+    @Test
+    public void concurrentRequestsGetExactCounts() throws Exception {
+        // 풀(기본 10)보다 많은 요청이 동시에 들어와도 count 는 순차 실행으로 물러나고 결과는 같아야 한다
+        ExecutorService requests = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Long>> totals = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String teamName = i % 2 == 0 ? "parallelTeamA" : null;
+                totals.add(requests.submit(() -> memberRepository.searchPageComplex(
+                        condition(teamName, 2100, 2107), PageRequest.of(0, 2), false).getTotalElements()));
+            }
+            for (int i = 0; i < totals.size(); i++) {
+                assertThat(totals.get(i).get(30, TimeUnit.SECONDS)).isEqualTo(i % 2 == 0 ? 4L : 8L);
+            }
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    private static MemberSearchCondition condition(String teamName, int ageGoe, int ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return condition;
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.CountedPage;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
@@ -16,6 +18,7 @@ import javax.persistence.EntityManager;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.support.StatementAssertions.assertMaxStatements;
 
 @SpringBootTest
 @Transactional
@@ -44,11 +47,12 @@ public class MemberRepositoryTest {
         em.persist(memberB);
         em.persist(memberC);
         em.persist(memberD);
+        em.flush();
         MemberSearchCondition memberSearchCondition = new MemberSearchCondition();
         memberSearchCondition.setTeamName("A");
 
-
-        List<MemberTeamDto> search = memberRepository.search(memberSearchCondition);
+        // DTO 조회는 조인 한 번으로 끝나야 한다
+        List<MemberTeamDto> search = assertMaxStatements(1, () -> memberRepository.search(memberSearchCondition));
         search.forEach(System.out::println);
     }
 
@@ -108,6 +112,37 @@ public class MemberRepositoryTest {
 
     }
 
+    @Test
+    public void cursorPagingTest() {
+        Team teamA = new Team("A");
+        Team teamB = new Team("B");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member memberA = new Member("memberA", 10, teamA);
+        Member memberB = new Member("memberB", 10, teamA);
+        Member memberC = new Member("memberC", 38, teamB);
+        Member memberD = new Member("memberD", 13, teamB);
+
+        em.persist(memberA);
+        em.persist(memberB);
+        em.persist(memberC);
+        em.persist(memberD);
+
+        MemberSearchCondition memberSearchCondition = new MemberSearchCondition();
+        memberSearchCondition.setAgeLoe(20);
+
+        MemberCursorPage first = memberRepository.searchAfter(memberSearchCondition, null, 2);
+        assertThat(first.getContent()).extracting("username").containsExactly("memberA", "memberB");
+        assertThat(first.isHasNext()).isTrue();
+
+        MemberCursorPage second = memberRepository.searchAfter(memberSearchCondition, first.getNextCursor(), 2);
+        assertThat(second.getContent()).extracting("username").containsExactly("memberD");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
     @Test
     public void querydslPredicateExecutorTest() {
         Team teamA = new Team("A");
@@ -133,4 +168,29 @@ public class MemberRepositoryTest {
             System.out.println("memberA :" + member1);
         }
     }
+
+    @Autowired
+    MemberCountCache countCache;
+
+    @Test
+    public void approximateCountTest() {
+        countCache.invalidateAll();
+        PageRequest pageRequest = PageRequest.of(0, 2);
+
+        // 조건도 캐시도 없으면 H2 통계의 추정 row 수 (InitMember 가 넣은 회원이 있다)
+        CountedPage<MemberTeamDto> estimated = memberRepository.searchPageComplex(new MemberSearchCondition(), pageRequest, true);
+        assertThat(estimated.isTotalExact()).isFalse();
+        assertThat(estimated.getTotalElements()).isGreaterThan(0);
+
+        // 조건이 있으면 추정하지 않고 센다. 센 값은 캐시에 남아 다음 approximate 조회가 쓴다.
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(0);
+        CountedPage<MemberTeamDto> counted = memberRepository.searchPageComplex(condition, pageRequest, true);
+        assertThat(counted.isTotalExact()).isTrue();
+
+        CountedPage<MemberTeamDto> cached = assertMaxStatements(1, () ->
+                memberRepository.searchPageComplex(condition, pageRequest, true));
+        assertThat(cached.isTotalExact()).isTrue();
+        assertThat(cached.getTotalElements()).isEqualTo(counted.getTotalElements());
+    }
 }
@@ -0,0 +1,111 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+// 캐시 무효화는 커밋 이후에 일어나므로 @Transactional 없이 트랜잭션을 직접 나눈다.
+@SpringBootTest
+class MemberSearchCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberSearchCache memberSearchCache;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).where(member.username.eq("cacheMember")).execute();
+            queryFactory.delete(team).where(team.name.eq("cacheTeam")).execute();
+            return null;
+        });
+    }
+
+    @Test
+    public void bulkUpdateInvalidatesSearchCache() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.execute(status -> {
+            Team cacheTeam = new Team("cacheTeam");
+            em.persist(cacheTeam);
+            em.persist(new Member("cacheMember", 10, cacheTeam));
+            return null;
+        });
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("cacheMember");
+
+        List<MemberTeamDto> first = memberRepository.search(condition);
+        List<MemberTeamDto> cached = memberRepository.search(condition);
+        assertThat(cached).isSameAs(first);
+        assertThat(first).extracting("age").containsExactly(10);
+
+        tx.execute(status -> new JPAQueryFactory(em)
+                .update(member)
+                .set(member.age, 20)
+                .where(member.username.eq("cacheMember"))
+                .execute());
+
+        assertThat(memberRepository.search(condition)).extracting("age").containsExactly(20);
+    }
+
+    @Test
+    public void resultLoadedBeforeInvalidationIsNotCached() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("cacheMember");
+        MemberSearchKey key = MemberSearchKey.of(condition);
+
+        // 읽은 뒤 저장하기 전에 다른 트랜잭션의 커밋으로 무효화된 경우
+        memberSearchCache.get(key, k -> {
+            List<MemberTeamDto> stale = new ArrayList<>();
+            memberSearchCache.invalidateAll();
+            return stale;
+        });
+
+        List<MemberTeamDto> fresh = Collections.singletonList(new MemberTeamDto(1L, "cacheMember", 10, null));
+        assertThat(memberSearchCache.get(key, k -> fresh)).isEqualTo(fresh);
+    }
+
+    @Test
+    public void unflushedChangesBypassCache() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("cacheMember");
+        MemberSearchKey key = MemberSearchKey.of(condition);
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            Team cacheTeam = new Team("cacheTeam");
+            em.persist(cacheTeam);
+            memberSearchCache.get(key, k -> new ArrayList<>());
+            status.setRollbackOnly();
+            return null;
+        });
+
+        List<MemberTeamDto> fresh = Collections.singletonList(new MemberTeamDto(1L, "cacheMember", 10, null));
+        assertThat(memberSearchCache.get(key, k -> fresh)).isEqualTo(fresh);
+    }
+}
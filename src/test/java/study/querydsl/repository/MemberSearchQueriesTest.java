@@ -0,0 +1,61 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UsernameMatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberSearchQueriesTest {
+
+    @Test
+    public void sameShapeReusesSerializedJpql() {
+        MemberSearchCondition first = new MemberSearchCondition();
+        first.setTeamName("teamA");
+        first.setAgeGoe(10);
+        MemberSearchCondition second = new MemberSearchCondition();
+        second.setTeamName("teamB");
+        second.setAgeGoe(35);
+
+        String jpql = MemberSearchQueries.jpql(MemberSearchKey.of(first), false, false);
+        // 값은 바인딩만 하므로 같은 문자열 인스턴스가 나온다
+        assertThat(MemberSearchQueries.jpql(MemberSearchKey.of(second), false, false)).isSameAs(jpql);
+        assertThat(jpql).doesNotContain("teamA", "10");
+    }
+
+    @Test
+    public void shapesSerializeFromQuerydsl() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(10);
+        condition.setAgeLoe(40);
+        MemberSearchKey key = MemberSearchKey.of(condition);
+
+        assertThat(MemberSearchQueries.jpql(key, false, false))
+                .contains("left join member1.team as team", "member1.username = ?", "team.name = ?");
+        assertThat(MemberSearchQueries.jpql(key, true, false))
+                .doesNotContain("join")
+                .contains("member1.team.id in ?");
+
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+        assertThat(MemberSearchQueries.jpql(MemberSearchKey.of(condition), true, false)).contains("like ?", "escape '!'");
+        assertThat(MemberSearchQueries.jpql(MemberSearchKey.of(condition), true, true)).contains("member1.id in ?");
+    }
+
+    @Test
+    public void blankConditionsShareTheEmptyShape() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("");
+        condition.setTeamName("  ");
+
+        assertThat(MemberSearchQueries.shapeOf(MemberSearchKey.of(condition), true, false)).isEqualTo(0);
+        assertThat(MemberSearchQueries.jpql(MemberSearchKey.of(condition), true, false)).doesNotContain("where");
+    }
+
+    @Test
+    public void likePatternEscapesWildcards() {
+        assertThat(MemberSearchQueries.likePattern("a_b%", UsernameMatch.PREFIX)).isEqualTo("a!_b!%%");
+        assertThat(MemberSearchQueries.likePattern("a!b", UsernameMatch.CONTAINS)).isEqualTo("%a!!b%");
+    }
+}
@@ -0,0 +1,151 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.CommittedData;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+
+// 스냅샷은 커밋 후에 갱신되므로 @Transactional 없이 트랜잭션을 직접 나눈다.
+@SpringBootTest(properties = {
+        "member.search.snapshot.enabled=true",
+        "member.search.result-cache.enabled=false"
+})
+class MemberSnapshotTest {
+
+    @RegisterExtension
+    CommittedData data = new CommittedData("snapMember", "snapTeam");
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberSnapshot memberSnapshot;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    // 시작할 때의 재로딩은 백그라운드에서 돈다. 이벤트 반영을 보려면 먼저 다 읽힌 상태여야 한다.
+    @BeforeEach
+    public void before() {
+        memberSnapshot.load();
+    }
+
+    @Test
+    public void searchMatchesDatabase() {
+        persistMembers();
+
+        MemberSearchCondition condition = condition("snapMember", UsernameMatch.PREFIX, "snapTeamA", 15, 40);
+        assertThat(memberSnapshot.search(MemberSearchKey.of(condition)))
+                .extracting("username", "age", "teamName")
+                .containsExactly(tuple("snapMember2", 20, "snapTeamA"), tuple("snapMember3", 40, "snapTeamA"));
+        assertThat(memberSnapshot.search(MemberSearchKey.of(condition)))
+                .containsExactlyInAnyOrderElementsOf(memberJpaRepository.search(condition));
+
+        assertThat(memberSnapshot.search(MemberSearchKey.of(condition("snapMember4", null, null, null, null))))
+                .extracting("teamId", "teamName")
+                .containsExactly(tuple(null, null));
+        assertThat(memberSnapshot.search(MemberSearchKey.of(condition("snapMember", UsernameMatch.PREFIX, "snapTeamNone", null, null))))
+                .isEmpty();
+    }
+
+    @Test
+    public void followsCommittedChanges() throws Exception {
+        Long[] ids = persistMembers();
+
+        data.execute(status -> {
+            Team teamA = em.find(Team.class, ids[0]);
+            teamA.setName("snapTeamRenamed");
+            em.find(Member.class, ids[1]).setAge(70);
+            em.remove(em.find(Member.class, ids[2]));
+            Team teamC = new Team("snapTeamC");
+            em.persist(teamC);
+            em.persist(new Member("snapMember5", 50, teamC));
+            // 커밋 전에는 스냅샷을 쓰지 않는다
+            assertThat(memberSnapshot.search(MemberSearchKey.of(new MemberSearchCondition()))).isNull();
+            return null;
+        });
+
+        List<MemberTeamDto> all = memberSnapshot.search(MemberSearchKey.of(
+                condition("snapMember", UsernameMatch.PREFIX, null, null, null)));
+        assertThat(all).extracting("username", "age", "teamName").containsExactly(
+                tuple("snapMember1", 70, "snapTeamRenamed"),
+                tuple("snapMember3", 40, "snapTeamRenamed"),
+                tuple("snapMember4", 30, null),
+                tuple("snapMember5", 50, "snapTeamC"));
+
+        // 벌크 연산 후에는 백그라운드에서 다시 읽는다
+        data.execute(status -> new JPAQueryFactory(em)
+                .update(member)
+                .set(member.age, 1)
+                .where(member.username.eq("snapMember4"))
+                .execute());
+        assertThat(await(() -> memberSnapshot.search(MemberSearchKey.of(condition("snapMember4", null, null, null, null)))))
+                .extracting("age").containsExactly(1);
+    }
+
+    @Test
+    public void returnsNullWhileReloading() throws Exception {
+        persistMembers();
+        MemberSearchKey key = MemberSearchKey.of(condition("snapMember4", null, null, null, null));
+
+        // load 와 같은 모니터를 잡아 재로딩을 붙잡아 둔다. 그동안 요청 스레드는 읽지 않고 null 을 받는다.
+        synchronized (memberSnapshot) {
+            memberSnapshot.reload();
+            assertThat(memberSnapshot.search(key)).isNull();
+        }
+        assertThat(await(() -> memberSnapshot.search(key))).extracting("age").containsExactly(30);
+    }
+
+    static <T> T await(Supplier<T> search) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            T result = search.get();
+            if (result != null) {
+                return result;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("not loaded within 10 seconds");
+    }
+
+    private Long[] persistMembers() {
+        return data.execute(status -> {
+            Team teamA = new Team("snapTeamA");
+            em.persist(teamA);
+            em.persist(new Team("snapTeamB"));
+            Member member1 = new Member("snapMember1", 10, teamA);
+            Member member2 = new Member("snapMember2", 20, teamA);
+            em.persist(member1);
+            em.persist(member2);
+            em.persist(new Member("snapMember3", 40, teamA));
+            em.persist(new Member("snapMember4", 30));
+            return new Long[]{teamA.getId(), member1.getId(), member2.getId()};
+        });
+    }
+
+    private static MemberSearchCondition condition(String username, UsernameMatch match, String teamName,
+                                                   Integer ageGoe, Integer ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setUsernameMatch(match);
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return condition;
+    }
+}
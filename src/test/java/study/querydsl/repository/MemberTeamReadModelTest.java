@@ -0,0 +1,163 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.EntityChangeListener;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberTeamView;
+import study.querydsl.entity.Team;
+import study.querydsl.service.MemberBulkOperations;
+import study.querydsl.support.CommittedData;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberTeamView.memberTeamView;
+
+// 읽기 모델은 커밋 직전에 갱신되므로 @Transactional 없이 트랜잭션을 직접 나눈다.
+@SpringBootTest(properties = {
+        "member.search.read-model.enabled=true",
+        "member.search.result-cache.enabled=false"
+})
+class MemberTeamReadModelTest {
+
+    @RegisterExtension
+    CommittedData data = new CommittedData("viewMember", "viewTeam");
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Test
+    public void entityChangesAreAppliedOnCommit() {
+        Long[] ids = data.execute(status -> {
+            Team viewTeam = new Team("viewTeamA");
+            em.persist(viewTeam);
+            Member viewMember = new Member("viewMember", 10, viewTeam);
+            em.persist(viewMember);
+            return new Long[]{viewTeam.getId(), viewMember.getId()};
+        });
+
+        assertThat(view("viewMember")).extracting("teamName", "age")
+                .containsExactly(tuple("viewTeamA", 10));
+
+        data.execute(status -> {
+            em.find(Team.class, ids[0]).setName("viewTeamB");
+            em.find(Member.class, ids[1]).setAge(11);
+            return null;
+        });
+        assertThat(view("viewMember")).extracting("teamName", "age")
+                .containsExactly(tuple("viewTeamB", 11));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("viewTeamB");
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("viewMember");
+
+        data.execute(status -> {
+            em.remove(em.find(Member.class, ids[1]));
+            return null;
+        });
+        assertThat(view("viewMember")).isEmpty();
+    }
+
+    @Test
+    public void bulkUpdateRebuildsView() {
+        data.execute(status -> {
+            Team viewTeam = new Team("viewTeamBulk");
+            em.persist(viewTeam);
+            em.persist(new Member("viewMemberBulk", 10, viewTeam));
+            return null;
+        });
+
+        data.execute(status -> new JPAQueryFactory(em)
+                .update(member)
+                .set(member.age, 30)
+                .where(member.username.eq("viewMemberBulk"))
+                .execute());
+
+        assertThat(view("viewMemberBulk")).extracting("age").containsExactly(30);
+    }
+
+    @Test
+    public void deferredBulkWaitsForFinalEvent() {
+        data.execute(status -> {
+            Team viewTeam = new Team("viewTeamDeferred");
+            em.persist(viewTeam);
+            em.persist(new Member("viewMemberDeferred", 10, viewTeam));
+            return null;
+        });
+
+        // MemberBulkOperations 의 구간 트랜잭션처럼 재계산을 미룬다
+        data.execute(status -> {
+            EntityChangeListener.deferRebuildsInCurrentTransaction();
+            return new JPAQueryFactory(em)
+                    .update(member)
+                    .set(member.age, 40)
+                    .where(member.username.eq("viewMemberDeferred"))
+                    .execute();
+        });
+        assertThat(view("viewMemberDeferred")).extracting("age").containsExactly(10);
+
+        // 트랜잭션 밖에서 온 BULK 는 새 트랜잭션에서 바로 다시 만든다
+        eventPublisher.publishEvent(EntityChangeEvent.bulk(Member.class));
+        assertThat(view("viewMemberDeferred")).extracting("age").containsExactly(40);
+    }
+
+    @Test
+    public void chunkedBulkUpdateIsAppliedAfterLastChunk() {
+        data.execute(status -> {
+            Team viewTeam = new Team("viewTeamChunk");
+            em.persist(viewTeam);
+            em.persist(new Member("viewMemberChunk1", 10, viewTeam));
+            em.persist(new Member("viewMemberChunk2", 20, viewTeam));
+            return null;
+        });
+
+        MemberBulkOperations chunked = new MemberBulkOperations(em, emf, transactionManager, eventPublisher, 1, 1);
+        chunked.update(member.username.startsWith("viewMemberChunk"), clause -> clause.set(member.age, member.age.add(1)));
+
+        assertThat(view("viewMemberChunk1")).extracting("age").containsExactly(11);
+        assertThat(view("viewMemberChunk2")).extracting("age").containsExactly(21);
+    }
+
+    @Test
+    public void rolledBackChangesAreNotApplied() {
+        data.execute(status -> {
+            em.persist(new Member("viewMemberRollback", 10));
+            em.flush();
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(view("viewMemberRollback")).isEmpty();
+    }
+
+    private List<MemberTeamView> view(String username) {
+        return data.execute(status -> new JPAQueryFactory(em)
+                .selectFrom(memberTeamView)
+                .where(memberTeamView.username.eq(username))
+                .fetch());
+    }
+}
@@ -0,0 +1,107 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+// 2차 캐시는 트랜잭션(영속성 컨텍스트) 사이에서만 의미가 있으므로 트랜잭션을 직접 나눈다.
+@SpringBootTest
+class SecondLevelCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    TransactionTemplate tx;
+    Statistics statistics;
+    Long teamId;
+    Long memberId;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        tx.execute(status -> {
+            Team l2Team = new Team("l2Team");
+            em.persist(l2Team);
+            Member l2Member = new Member("l2Member", 10, l2Team);
+            em.persist(l2Member);
+            teamId = l2Team.getId();
+            memberId = l2Member.getId();
+            return null;
+        });
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        tx.execute(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).where(member.username.eq("l2Member")).execute();
+            queryFactory.delete(team).where(team.name.eq("l2Team")).execute();
+            return null;
+        });
+    }
+
+    @Test
+    public void findByIdAndLazyTeamHitCache() {
+        tx.execute(status -> memberJpaRepository.findById(memberId).map(m -> m.getTeam().getName()));
+
+        long hits = statistics.getSecondLevelCacheHitCount();
+        String teamName = tx.execute(status -> memberJpaRepository.findById(memberId)
+                .map(m -> m.getTeam().getName())
+                .orElse(null));
+
+        assertThat(teamName).isEqualTo("l2Team");
+        // member, team 모두 캐시에서
+        assertThat(statistics.getSecondLevelCacheHitCount() - hits).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    public void findByUsernameUsesQueryCache() {
+        tx.execute(status -> memberJpaRepository.findByUsername("l2Member"));
+
+        long queryHits = statistics.getQueryCacheHitCount();
+        assertThat(tx.execute(status -> memberJpaRepository.findByUsername("l2Member"))).hasSize(1);
+        assertThat(statistics.getQueryCacheHitCount() - queryHits).isEqualTo(1);
+    }
+
+    @Test
+    public void bulkUpdateEvictsRegionAndQueryCache() {
+        tx.execute(status -> memberJpaRepository.findByUsername("l2Member"));
+        assertThat(emf.getCache().contains(Member.class, memberId)).isTrue();
+
+        tx.execute(status -> new JPAQueryFactory(em)
+                .update(member)
+                .set(member.age, 20)
+                .where(member.username.eq("l2Member"))
+                .execute());
+
+        assertThat(emf.getCache().contains(Member.class, memberId)).isFalse();
+        assertThat(tx.execute(status -> memberJpaRepository.findByUsername("l2Member")))
+                .extracting("age").containsExactly(20);
+    }
+}
@@ -0,0 +1,118 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.CommittedData;
+import study.querydsl.support.DerivedDataTest;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// 사전은 커밋된 팀만 담으므로 @Transactional 없이 트랜잭션을 직접 나눈다.
+@DerivedDataTest
+class TeamNameDictionaryTest {
+
+    @RegisterExtension
+    CommittedData data = new CommittedData("dictMember", "dictTeam");
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    TeamNameDictionary teamNameDictionary;
+
+    @Test
+    public void searchesByTeamIdsAndFillsTeamNames() {
+        data.execute(status -> {
+            // 이름이 같은 팀 두 개
+            Team teamA = new Team("dictTeamA");
+            Team otherTeamA = new Team("dictTeamA");
+            Team teamB = new Team("dictTeamB");
+            em.persist(teamA);
+            em.persist(otherTeamA);
+            em.persist(teamB);
+            em.persist(new Member("dictMember1", 10, teamA));
+            em.persist(new Member("dictMember2", 20, otherTeamA));
+            em.persist(new Member("dictMember3", 30, teamB));
+            return null;
+        });
+
+        TeamNameDictionary.Snapshot snapshot = teamNameDictionary.snapshot();
+        assertThat(snapshot).isNotNull();
+        assertThat(snapshot.idsOf("dictTeamA")).hasSize(2);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("dictTeamA");
+
+        assertThat(memberRepository.search(condition))
+                .extracting("username", "teamName")
+                .containsExactlyInAnyOrder(
+                        tuple("dictMember1", "dictTeamA"),
+                        tuple("dictMember2", "dictTeamA"));
+        assertThat(memberJpaRepository.search(condition)).hasSize(2);
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 1)).getTotalElements()).isEqualTo(2);
+
+        condition.setTeamName("dictTeamMissing");
+        assertThat(memberRepository.search(condition)).isEmpty();
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 1)).getTotalElements()).isEqualTo(0);
+    }
+
+    @Test
+    public void teamRenameInvalidatesDictionary() {
+        Long teamId = data.execute(status -> {
+            Team dictTeam = new Team("dictTeamOld");
+            em.persist(dictTeam);
+            em.persist(new Member("dictMember", 10, dictTeam));
+            return dictTeam.getId();
+        });
+        assertThat(teamNameDictionary.snapshot().nameOf(teamId)).isEqualTo("dictTeamOld");
+
+        data.execute(status -> {
+            em.find(Team.class, teamId).setName("dictTeamNew");
+            return null;
+        });
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("dictTeamNew");
+        assertThat(memberRepository.search(condition)).extracting("teamName").containsExactly("dictTeamNew");
+    }
+
+    @Test
+    public void pendingWritesBypassDictionary() {
+        data.execute(status -> {
+            em.persist(new Team("dictTeamPending"));
+            assertThat(teamNameDictionary.snapshot()).isNull();
+            status.setRollbackOnly();
+            return null;
+        });
+        // 롤백된 팀은 사전에 들어가지 않는다
+        assertThat(teamNameDictionary.snapshot().idsOf("dictTeamPending")).isEmpty();
+    }
+
+    @Test
+    public void loadsOutsideCallerTransaction() {
+        teamNameDictionary.invalidate();
+        data.execute(status -> {
+            // 사전을 읽은 뒤에 생긴 변경이라 우회하지 않는다. 사전은 별도 트랜잭션에서 커밋된 팀만 읽었어야 한다.
+            TeamNameDictionary.Snapshot snapshot = teamNameDictionary.snapshot();
+            em.persist(new Team("dictTeamLater"));
+            assertThat(snapshot.idsOf("dictTeamLater")).isEmpty();
+            status.setRollbackOnly();
+            return null;
+        });
+        assertThat(teamNameDictionary.snapshot().idsOf("dictTeamLater")).isEmpty();
+    }
+}
@@ -0,0 +1,178 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.MemberBulkOperations;
+import study.querydsl.support.CommittedData;
+import study.querydsl.support.DerivedDataTest;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+
+// team_stats 는 커밋 직전에 갱신되므로 @Transactional 없이 트랜잭션을 직접 나눈다.
+@DerivedDataTest
+class TeamStatsRepositoryTest {
+
+    @RegisterExtension
+    CommittedData data = new CommittedData("statsMember", "statsTeam");
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    TeamStatsRepository teamStatsRepository;
+
+    @Test
+    public void aggregateGroupsByTeam() {
+        data.execute(status -> {
+            Team statsTeam = new Team("statsTeamA");
+            em.persist(statsTeam);
+            em.persist(new Team("statsTeamEmpty"));
+            em.persist(new Member("statsMember1", 10, statsTeam));
+            em.persist(new Member("statsMember2", 20, statsTeam));
+            em.persist(new Member("statsMember3", 45, statsTeam));
+            return null;
+        });
+
+        assertThat(statsTeams(teamStatsRepository.aggregate()))
+                .extracting("teamName", "memberCount", "ageSum", "ageAvg", "ageMin", "ageMax")
+                .containsExactly(
+                        tuple("statsTeamA", 3L, 75L, 25.0, 10, 45),
+                        tuple("statsTeamEmpty", 0L, 0L, null, null, null));
+        assertThat(statsTeams(teamStatsRepository.findAll()))
+                .isEqualTo(statsTeams(teamStatsRepository.aggregate()));
+    }
+
+    @Test
+    public void tableFollowsMemberChanges() {
+        Long[] ids = data.execute(status -> {
+            Team statsTeamA = new Team("statsTeamA");
+            Team statsTeamB = new Team("statsTeamB");
+            em.persist(statsTeamA);
+            em.persist(statsTeamB);
+            Member moving = new Member("statsMemberMoving", 50, statsTeamA);
+            Member removed = new Member("statsMemberRemoved", 30, statsTeamB);
+            em.persist(new Member("statsMemberStaying", 10, statsTeamA));
+            em.persist(moving);
+            em.persist(removed);
+            return new Long[]{statsTeamB.getId(), moving.getId(), removed.getId()};
+        });
+        assertThat(statsTeams(teamStatsRepository.findAll())).extracting("teamName", "memberCount", "ageMax")
+                .containsExactly(tuple("statsTeamA", 2L, 50), tuple("statsTeamB", 1L, 30));
+
+        // 이전 팀(A) 의 max 도 다시 계산되어야 한다
+        data.execute(status -> {
+            em.find(Member.class, ids[1]).changeTeam(em.find(Team.class, ids[0]));
+            em.remove(em.find(Member.class, ids[2]));
+            return null;
+        });
+        assertThat(statsTeams(teamStatsRepository.findAll())).extracting("teamName", "memberCount", "ageMax")
+                .containsExactly(tuple("statsTeamA", 1L, 10), tuple("statsTeamB", 1L, 50));
+
+        data.execute(status -> new JPAQueryFactory(em)
+                .update(member)
+                .set(member.age, 20)
+                .where(member.username.eq("statsMemberStaying"))
+                .execute());
+        assertThat(statsTeams(teamStatsRepository.findAll()))
+                .isEqualTo(statsTeams(teamStatsRepository.aggregate()))
+                .extracting("teamName", "ageMax")
+                .containsExactly(tuple("statsTeamA", 20), tuple("statsTeamB", 50));
+    }
+
+    @Test
+    public void chunkedBulkUpdateIsCountedAfterLastChunk() {
+        data.execute(status -> {
+            Team statsTeam = new Team("statsTeamChunk");
+            em.persist(statsTeam);
+            em.persist(new Member("statsMemberChunk1", 10, statsTeam));
+            em.persist(new Member("statsMemberChunk2", 20, statsTeam));
+            return null;
+        });
+
+        // 구간 트랜잭션마다가 아니라 마지막에 한 번 다시 계산한다
+        MemberBulkOperations chunked = new MemberBulkOperations(em, emf, transactionManager, eventPublisher, 1, 1);
+        chunked.update(member.username.startsWith("statsMemberChunk"), clause -> clause.set(member.age, member.age.add(1)));
+
+        assertThat(statsTeams(teamStatsRepository.findAll()))
+                .extracting("teamName", "memberCount", "ageSum", "ageMin", "ageMax")
+                .containsExactly(tuple("statsTeamChunk", 2L, 32L, 11, 21));
+    }
+
+    @Test
+    public void concurrentChangesToSameTeamAreAllCounted() throws Exception {
+        Long teamId = data.execute(status -> {
+            Team statsTeam = new Team("statsTeamConcurrent");
+            em.persist(statsTeam);
+            return statsTeam.getId();
+        });
+
+        // 모두 회원을 넣고 플러시한 뒤 (서로의 행은 아직 보이지 않는 상태에서) 동시에 커밋한다
+        int writers = 4;
+        CyclicBarrier flushed = new CyclicBarrier(writers);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                int age = 10 * (i + 1);
+                results.add(executor.submit(() -> data.execute(status -> {
+                    em.persist(new Member("statsMemberConcurrent" + age, age, em.getReference(Team.class, teamId)));
+                    em.flush();
+                    await(flushed);
+                    return null;
+                })));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(statsTeams(teamStatsRepository.findAll()))
+                .extracting("teamName", "memberCount", "ageSum", "ageMin", "ageMax")
+                .containsExactly(tuple("statsTeamConcurrent", 4L, 100L, 10, 40));
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<TeamStatsDto> statsTeams(List<TeamStatsDto> stats) {
+        return stats.stream()
+                .filter(dto -> dto.getTeamName().startsWith("statsTeam"))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,117 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+import study.querydsl.support.CommittedData;
+import study.querydsl.support.DerivedDataTest;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+// 인덱스는 커밋 후에 갱신되므로 @Transactional 없이 트랜잭션을 직접 나눈다.
+@DerivedDataTest
+class UsernameIndexTest {
+
+    @RegisterExtension
+    CommittedData data = new CommittedData("ngram", null);
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    // 시작할 때의 재로딩은 백그라운드에서 돈다. 이벤트 반영을 보려면 먼저 다 읽힌 상태여야 한다.
+    @BeforeEach
+    public void before() {
+        usernameIndex.load();
+    }
+
+    @Test
+    public void findsPrefixAndSubstringCandidates() {
+        Long[] ids = persist("ngramAlice", "ngramAlina", "ngramBob");
+
+        assertThat(usernameIndex.find("ngramAli", UsernameMatch.PREFIX)).containsExactly(ids[0], ids[1]);
+        assertThat(usernameIndex.find("lin", UsernameMatch.CONTAINS)).contains(ids[1]).doesNotContain(ids[0], ids[2]);
+        assertThat(usernameIndex.find("ngramZ", UsernameMatch.PREFIX)).isEmpty();
+        // 3-gram 이 안 나오는 짧은 검색어와 EXACT 는 DB 에서 찾는다
+        assertThat(usernameIndex.find("li", UsernameMatch.CONTAINS)).isNull();
+        assertThat(usernameIndex.find("ngramBob", UsernameMatch.EXACT)).isNull();
+    }
+
+    @Test
+    public void followsCommittedChanges() {
+        Long[] ids = persist("ngramCarol", "ngramDave");
+
+        data.execute(status -> {
+            em.find(Member.class, ids[0]).setUsername("ngramErin");
+            em.remove(em.find(Member.class, ids[1]));
+            // 커밋 전에는 인덱스를 쓰지 않는다
+            assertThat(usernameIndex.find("ngramEr", UsernameMatch.PREFIX)).isNull();
+            return null;
+        });
+
+        assertThat(usernameIndex.find("ngramCa", UsernameMatch.PREFIX)).isEmpty();
+        assertThat(usernameIndex.find("ngramDa", UsernameMatch.PREFIX)).isEmpty();
+        assertThat(usernameIndex.find("ngramEr", UsernameMatch.PREFIX)).containsExactly(ids[0]);
+    }
+
+    @Test
+    public void bulkUpdateReloadsInBackground() throws Exception {
+        Long[] ids = persist("ngramGrace", "ngramGreg");
+
+        data.execute(status -> new JPAQueryFactory(em)
+                .update(member)
+                .set(member.username, "ngramHeidi")
+                .where(member.id.eq(ids[0]))
+                .execute());
+
+        assertThat(MemberSnapshotTest.await(() -> usernameIndex.find("ngramHe", UsernameMatch.PREFIX)))
+                .containsExactly(ids[0]);
+        assertThat(usernameIndex.find("ngramGr", UsernameMatch.PREFIX)).containsExactly(ids[1]);
+    }
+
+    @Test
+    public void searchUsesUsernameMatch() {
+        persist("ngramFrank", "ngramFran_k", "ngram%Fred");
+
+        assertThat(search("ngramFran", UsernameMatch.PREFIX)).extracting("username")
+                .containsExactlyInAnyOrder("ngramFrank", "ngramFran_k");
+        // 인덱스를 못 쓰는 짧은 검색어는 like 로 찾는다. (%, _ 는 문자 그대로)
+        assertThat(search("_", UsernameMatch.CONTAINS)).extracting("username").contains("ngramFran_k")
+                .doesNotContain("ngramFrank");
+        assertThat(search("ngram%", UsernameMatch.PREFIX)).extracting("username").containsExactly("ngram%Fred");
+        assertThat(search("ngramFrank", null)).extracting("username").containsExactly("ngramFrank");
+    }
+
+    private List<?> search(String username, UsernameMatch match) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setUsernameMatch(match);
+        return memberRepository.search(condition);
+    }
+
+    private Long[] persist(String... usernames) {
+        return data.execute(status -> {
+            Long[] ids = new Long[usernames.length];
+            for (int i = 0; i < usernames.length; i++) {
+                Member ngramMember = new Member(usernames[i], 20);
+                em.persist(ngramMember);
+                ids[i] = ngramMember.getId();
+            }
+            return ids;
+        });
+    }
+}
@@ -0,0 +1,137 @@
+package study.querydsl.seed;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.EntityChangeEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+// 청크마다 커밋하므로 @Transactional 없이 돌리고, 시드 전에 없던 팀과 그 팀의 회원을 지운다.
+@SpringBootTest
+class MemberDataSeederTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberDataSeeder seeder;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    EventRecorder events;
+
+    List<Long> existingTeamIds;
+
+    @BeforeEach
+    public void before() {
+        existingTeamIds = new TransactionTemplate(transactionManager).execute(status ->
+                new JPAQueryFactory(em).select(team.id).from(team).fetch());
+        events.clear();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).where(member.team.id.notIn(existingTeamIds)).execute();
+            queryFactory.delete(team).where(team.id.notIn(existingTeamIds)).execute();
+            return null;
+        });
+    }
+
+    @Test
+    public void seedsInChunksAndPublishesBulkEventsOnce() {
+        MemberSeedSpec spec = new MemberSeedSpec();
+        spec.setDataset(MemberSeedSpec.Dataset.RANDOM);
+        spec.setMemberCount(25);
+        spec.setTeamCount(3);
+        spec.setFlushSize(5);
+        spec.setCommitSize(10);
+
+        // 시드 전에 캐시에 빈 결과를 올려 둔다 (RANDOM 팀 이름은 team0, team1, ...)
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("team1");
+        assertThat(memberRepository.search(condition)).isEmpty();
+
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        long transactions = statistics.getSuccessfulTransactionCount();
+        long flushes = statistics.getFlushCount();
+        long inserts = statistics.getEntityInsertCount();
+        events.clear();
+
+        assertThat(seeder.seed(spec)).isEqualTo(25);
+
+        // 팀 1 + 회원 청크 3 (10, 10, 5) + BULK 발행 1
+        assertThat(statistics.getSuccessfulTransactionCount() - transactions).isEqualTo(5);
+        // 팀 커밋 1 + 회원 5건마다 1 (청크 끝의 빈 flush 는 세지 않는다)
+        assertThat(statistics.getFlushCount() - flushes).isEqualTo(1 + 5);
+        assertThat(statistics.getEntityInsertCount() - inserts).isEqualTo(3 + 25);
+
+        // 행마다 이벤트를 내지 않고 끝에서 BULK 만 한 번씩
+        assertThat(events.received)
+                .extracting("type", "entityType")
+                .containsExactly(
+                        tuple(EntityChangeEvent.Type.BULK, Team.class),
+                        tuple(EntityChangeEvent.Type.BULK, Member.class));
+
+        assertThat(new TransactionTemplate(transactionManager).execute(status ->
+                new JPAQueryFactory(em).selectFrom(member).where(member.team.id.notIn(existingTeamIds)).fetchCount()))
+                .isEqualTo(25);
+        // BULK 이벤트로 캐시가 비워져서 새로 넣은 회원이 보인다
+        assertThat(memberRepository.search(condition)).isNotEmpty();
+    }
+
+    @TestConfiguration
+    static class EventRecorderConfig {
+
+        @Bean
+        EventRecorder eventRecorder() {
+            return new EventRecorder();
+        }
+    }
+
+    static class EventRecorder {
+
+        final List<EntityChangeEvent> received = new CopyOnWriteArrayList<>();
+
+        @EventListener
+        public void onEntityChange(EntityChangeEvent event) {
+            received.add(event);
+        }
+
+        void clear() {
+            received.clear();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.seed;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TeamPickerTest {
+
+    @Test
+    public void skewConcentratesMembersOnFirstTeams() {
+        int[] uniform = pick(new MemberDataSeeder.TeamPicker(10, 0), 100_000);
+        int[] skewed = pick(new MemberDataSeeder.TeamPicker(10, 2), 100_000);
+
+        for (int count : uniform) {
+            assertThat(count).isBetween(9_000, 11_000);
+        }
+        assertThat(skewed[0]).isGreaterThan(skewed[1]);
+        assertThat(skewed[0]).isGreaterThan(50_000);
+    }
+
+    private static int[] pick(MemberDataSeeder.TeamPicker picker, int samples) {
+        Random random = new Random(1);
+        int[] counts = new int[10];
+        for (int i = 0; i < samples; i++) {
+            counts[picker.pick(random)]++;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,137 @@
+package study.querydsl.service;
+
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+// 트랜잭션 밖에서 호출하면 구간마다 REQUIRES_NEW 로 커밋된다. 그래서 @Transactional 없이 확인한다.
+@SpringBootTest(properties = "member.bulk.chunk-size=2")
+class MemberBulkOperationsChunkTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    MemberBulkOperations memberBulkOperations;
+
+    Long[] ids;
+
+    @BeforeEach
+    public void before() {
+        ids = new TransactionTemplate(transactionManager).execute(status -> {
+            Member[] members = {
+                    new Member("bulkChunkA", 10),
+                    new Member("bulkChunkB", 20),
+                    new Member("bulkChunkC", 30),
+                    new Member("bulkChunkD", 40)
+            };
+            Long[] memberIds = new Long[members.length];
+            for (int i = 0; i < members.length; i++) {
+                em.persist(members[i]);
+                memberIds[i] = members[i].getId();
+            }
+            return memberIds;
+        });
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).execute(status -> new JPAQueryFactory(em)
+                .delete(member)
+                .where(member.username.startsWith("bulkChunk"))
+                .execute());
+    }
+
+    @Test
+    public void sequentialChunksCommitEach() {
+        long count = memberBulkOperations.update(member.username.startsWith("bulkChunk"),
+                clause -> clause.set(member.age, member.age.add(1)));
+
+        assertThat(count).isEqualTo(4);
+        assertThat(ages()).containsExactly(11, 21, 31, 41);
+    }
+
+    @Test
+    public void parallelChunksCommitEach() {
+        MemberBulkOperations parallel = new MemberBulkOperations(em, emf, transactionManager, eventPublisher, 2, 2);
+        try {
+            long count = parallel.update(member.username.startsWith("bulkChunk"),
+                    clause -> clause.set(member.age, member.age.add(1)));
+
+            assertThat(count).isEqualTo(4);
+            assertThat(ages()).containsExactly(11, 21, 31, 41);
+        } finally {
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    public void sequentialFailureKeepsEarlierChunks() {
+        assertThatThrownBy(() -> memberBulkOperations.update(member.username.startsWith("bulkChunk"),
+                clause -> clause.set(member.age, failingAt(ids[2]))))
+                .isInstanceOf(RuntimeException.class);
+
+        Integer[] ages = ages();
+        // C 의 구간은 롤백되고 그 뒤 구간은 실행되지 않는다. A 의 구간은 이미 커밋되어 남는다.
+        assertThat(ages[0]).isEqualTo(11);
+        assertThat(ages[2]).isEqualTo(30);
+        assertThat(ages[3]).isEqualTo(40);
+    }
+
+    @Test
+    public void parallelFailureKeepsOtherChunks() {
+        MemberBulkOperations parallel = new MemberBulkOperations(em, emf, transactionManager, eventPublisher, 2, 2);
+        try {
+            assertThatThrownBy(() -> parallel.update(member.username.startsWith("bulkChunk"),
+                    clause -> clause.set(member.age, failingAt(ids[2]))))
+                    .isInstanceOf(RuntimeException.class);
+        } finally {
+            parallel.shutdown();
+        }
+
+        Integer[] ages = ages();
+        // 실패한 구간만 롤백된다. D 의 구간은 실행 여부가 타이밍에 달려 있어 확인하지 않는다.
+        assertThat(ages[0]).isEqualTo(11);
+        assertThat(ages[2]).isEqualTo(30);
+    }
+
+    // age + 1, 단 failId 행에서는 0 으로 나누기 오류
+    private static NumberExpression<Integer> failingAt(Long failId) {
+        return member.age.add(1).add(Expressions.numberTemplate(Integer.class, "0 / ({0} - {1})", member.id, failId));
+    }
+
+    private Integer[] ages() {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Integer[] ages = new Integer[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                ages[i] = em.find(Member.class, ids[i]).getAge();
+            }
+            return ages;
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest(properties = "member.bulk.chunk-size=2")
+@Transactional
+class MemberBulkOperationsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberBulkOperations memberBulkOperations;
+
+    Member memberA;
+    Member memberC;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("bulkA");
+        Team teamB = new Team("bulkB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        memberA = new Member("bulkMemberA", 10, teamA);
+        memberC = new Member("bulkMemberC", 38, teamB);
+        em.persist(memberA);
+        em.persist(new Member("bulkMemberB", 10, teamA));
+        em.persist(memberC);
+        em.persist(new Member("bulkMemberD", 13, teamB));
+    }
+
+    @Test
+    public void chunkedUpdateRefreshesManagedEntities() {
+        long count = memberBulkOperations.update(
+                member.username.startsWith("bulkMember"),
+                clause -> clause.set(member.age, member.age.add(1)));
+
+        assertThat(count).isEqualTo(4);
+        // flush/clear 없이도 영속성 컨텍스트의 엔티티가 갱신되어 있어야 한다.
+        assertThat(memberA.getAge()).isEqualTo(11);
+        assertThat(memberC.getAge()).isEqualTo(39);
+    }
+
+    @Test
+    public void chunkedDeleteEvictsManagedEntities() {
+        long count = memberBulkOperations.delete(member.username.startsWith("bulkMember").and(member.age.gt(20)));
+
+        assertThat(count).isEqualTo(1);
+        assertThat(em.contains(memberC)).isFalse();
+        assertThat(em.find(Member.class, memberC.getId())).isNull();
+        assertThat(em.contains(memberA)).isTrue();
+    }
+}
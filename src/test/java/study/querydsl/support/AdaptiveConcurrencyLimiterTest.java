@@ -0,0 +1,67 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    AtomicLong now = new AtomicLong();
+
+    @Test
+    public void rejectsOverLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 1000, now::get);
+
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire();
+        AdaptiveConcurrencyLimiter.Permit second = limiter.tryAcquire();
+
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(limiter.tryAcquire()).isNull();
+        assertThat(limiter.getRejected()).isEqualTo(1);
+
+        first.release(false);
+        assertThat(limiter.tryAcquire()).isNotNull();
+    }
+
+    @Test
+    public void growsWhileLatencyStaysFlat() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 1000, now::get);
+
+        for (int i = 0; i < 50; i++) {
+            runFullBatch(limiter, 10);
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(10);
+    }
+
+    @Test
+    public void shrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 100, 1000, now::get);
+        runFullBatch(limiter, 10);
+
+        // 응답 시간이 4배 -> 대기열 추정치가 limit 의 3/4
+        for (int i = 0; i < 50; i++) {
+            runFullBatch(limiter, 40);
+        }
+
+        assertThat(limiter.getLimit()).isLessThan(50);
+        assertThat(limiter.getEstimatedQueue()).isGreaterThan(0);
+    }
+
+    // limit 만큼 동시에 잡고 rttMillis 후에 모두 성공으로 반납
+    private void runFullBatch(AdaptiveConcurrencyLimiter limiter, long rttMillis) {
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        AdaptiveConcurrencyLimiter.Permit permit;
+        while ((permit = limiter.tryAcquire()) != null) {
+            permits.add(permit);
+        }
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+        permits.forEach(p -> p.release(true));
+    }
+}
@@ -0,0 +1,66 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 커밋 후에 갱신되는 사전/인덱스/집계 테이블을 보는 테스트는 @Transactional 없이 트랜잭션을 직접 나눈다.
+ * execute 는 새 트랜잭션에서 실행하고 커밋한다. 테스트가 끝나면 이름 접두어로 넣은 회원/팀을 지운다.
+ * <pre>
+ * &#64;RegisterExtension
+ * CommittedData data = new CommittedData("dictMember", "dictTeam");
+ * </pre>
+ */
+public class CommittedData implements BeforeEachCallback, AfterEachCallback {
+
+    private final String memberPrefix;
+    private final String teamPrefix;
+
+    private EntityManager em;
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * @param teamPrefix 팀을 만들지 않는 테스트면 null
+     */
+    public CommittedData(String memberPrefix, String teamPrefix) {
+        this.memberPrefix = memberPrefix;
+        this.teamPrefix = teamPrefix;
+    }
+
+    public <T> T execute(TransactionCallback<T> action) {
+        return transactionTemplate.execute(action);
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        ApplicationContext applicationContext = SpringExtension.getApplicationContext(context);
+        em = SharedEntityManagerCreator.createSharedEntityManager(applicationContext.getBean(EntityManagerFactory.class));
+        transactionTemplate = new TransactionTemplate(applicationContext.getBean(PlatformTransactionManager.class));
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        execute(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            queryFactory.delete(member).where(member.username.startsWith(memberPrefix)).execute();
+            if (teamPrefix != null) {
+                queryFactory.delete(team).where(team.name.startsWith(teamPrefix)).execute();
+            }
+            return null;
+        });
+    }
+}
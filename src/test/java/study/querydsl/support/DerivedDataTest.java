@@ -0,0 +1,26 @@
+package study.querydsl.support;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 팀 사전, username/나이 인덱스, 메모리 평가기, team_stats 테이블을 한 컨텍스트에서 같이 켠다.
+ * 검색 결과 캐시와 count 캐시는 꺼서 매번 이 구조들을 거치게 한다.
+ * 검색 경로를 통째로 바꾸는 읽기 모델(member_team_view)과 컬럼 스냅샷은 각자의 테스트에서만 켠다.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@SpringBootTest(properties = {
+        "member.search.result-cache.enabled=false",
+        "member.search.count-cache.enabled=false",
+        "member.search.username-index.enabled=true",
+        "member.search.age-index.enabled=true",
+        "member.search.in-memory.enabled=true",
+        "member.team-stats.table.enabled=true"
+})
+public @interface DerivedDataTest {
+}
@@ -0,0 +1,51 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class EntityWriteTrackerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityWriteTracker writeTracker;
+
+    @Test
+    public void persistIsPendingBeforeFlush() {
+        assertThat(writeTracker.hasPendingWrites()).isFalse();
+
+        em.persist(new Team("trackerTeam"));
+
+        assertThat(writeTracker.hasPendingWrites()).isTrue();
+    }
+
+    @Test
+    public void fieldChangeIsCheckedOncePerCall() {
+        // persist 하면 트랜잭션 끝까지 표시가 남으므로 InitMember 가 넣어 둔 회원을 쓴다
+        Member managed = em.createQuery("select m from Member m", Member.class)
+                .setMaxResults(1)
+                .getSingleResult();
+
+        boolean began = EntityWriteTracker.beginCallScope();
+        try {
+            assertThat(writeTracker.hasPendingWrites()).isFalse();
+            // 범위 안에서는 처음 확인한 값을 쓴다 (저장소 메서드 안에서는 엔티티를 바꾸지 않는다)
+            managed.setAge(20);
+            assertThat(writeTracker.hasPendingWrites()).isFalse();
+        } finally {
+            EntityWriteTracker.endCallScope(began);
+        }
+        assertThat(writeTracker.hasPendingWrites()).isTrue();
+    }
+}
@@ -0,0 +1,55 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LongIntHashMapTest {
+
+    @Test
+    public void putGetRemove() {
+        LongIntHashMap map = new LongIntHashMap();
+
+        assertThat(map.put(1L, 10)).isEqualTo(LongIntHashMap.MISSING);
+        assertThat(map.put(1L, 11)).isEqualTo(10);
+        assertThat(map.put(0L, 0)).isEqualTo(LongIntHashMap.MISSING);
+        assertThat(map.get(1L)).isEqualTo(11);
+        assertThat(map.get(0L)).isEqualTo(0);
+        assertThat(map.get(2L)).isEqualTo(LongIntHashMap.MISSING);
+
+        assertThat(map.remove(1L)).isEqualTo(11);
+        assertThat(map.remove(1L)).isEqualTo(LongIntHashMap.MISSING);
+        assertThat(map.size()).isEqualTo(1);
+        assertThatThrownBy(() -> map.put(Long.MIN_VALUE, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // 리사이즈와 삭제 후 당겨오기가 섞여도 HashMap 과 같은 결과
+    @Test
+    public void matchesHashMapUnderRandomOperations() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(key);
+                assertThat(map.remove(key)).isEqualTo(removed != null ? removed : LongIntHashMap.MISSING);
+            } else {
+                Integer previous = expected.put(key, i);
+                assertThat(map.put(key, i)).isEqualTo(previous != null ? previous : LongIntHashMap.MISSING);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = 0; key < 5_000; key++) {
+            Integer value = expected.get(key);
+            assertThat(map.get(key)).isEqualTo(value != null ? value : LongIntHashMap.MISSING);
+        }
+    }
+}
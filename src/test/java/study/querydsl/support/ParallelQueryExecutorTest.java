@@ -0,0 +1,88 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelQueryExecutorTest {
+
+    // 트랜잭션 밖에서만 쓰므로 EntityManagerFactory 는 필요 없다
+    private static final EntityWriteTracker NO_TRANSACTION_WRITE_TRACKER = new EntityWriteTracker(null);
+
+    private final PlatformTransactionManager noopTransactionManager = new PlatformTransactionManager() {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    };
+
+    private ParallelQueryExecutor executor;
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void disabledExecutorFallsBackToCaller() {
+        executor = new ParallelQueryExecutor(false, 4, noopTransactionManager, NO_TRANSACTION_WRITE_TRACKER, null);
+
+        assertThat(executor.trySubmit(() -> 1L)).isNull();
+    }
+
+    @Test
+    public void saturatedExecutorFallsBackToCaller() throws Exception {
+        executor = new ParallelQueryExecutor(true, 1, noopTransactionManager, NO_TRANSACTION_WRITE_TRACKER, null);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Long> running = executor.trySubmit(() -> {
+            await(release);
+            return 42L;
+        });
+
+        assertThat(running).isNotNull();
+        assertThat(executor.trySubmit(() -> 1L)).isNull();
+
+        release.countDown();
+        assertThat(ParallelQueryExecutor.join(running)).isEqualTo(42L);
+    }
+
+    @Test
+    public void joinAddsWorkerStatementsToCaller() {
+        executor = new ParallelQueryExecutor(true, 1, noopTransactionManager, NO_TRANSACTION_WRITE_TRACKER, null);
+        long before = QueryCounter.statements();
+
+        Future<Long> counted = executor.trySubmit(() -> {
+            QueryCounter.statementPrepared();
+            QueryCounter.statementPrepared();
+            return 2L;
+        });
+
+        assertThat(ParallelQueryExecutor.join(counted)).isEqualTo(2L);
+        assertThat(QueryCounter.statements() - before).isEqualTo(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package study.querydsl.support;
+
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 호출 하나가 실행한 SQL 수를 검사한다.
+ * 쓰기 지연된 insert 가 함께 세지지 않도록 호출 전에 em.flush() 해 둘 것.
+ */
+public final class StatementAssertions {
+
+    private StatementAssertions() {
+    }
+
+    public static long countStatements(Runnable call) {
+        long before = QueryCounter.statements();
+        call.run();
+        return QueryCounter.statements() - before;
+    }
+
+    public static <T> T assertMaxStatements(int maxStatements, Supplier<T> call) {
+        long before = QueryCounter.statements();
+        T result = call.get();
+        assertThat(QueryCounter.statements() - before).as("SQL statement count").isLessThanOrEqualTo(maxStatements);
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@SpringBootTest
+@Transactional
+class StatementBudgetGuardTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @AfterEach
+    public void tearDown() {
+        StatementBudgetGuard.end();
+    }
+
+    @Test
+    public void warnModeOnlyCounts() {
+        em.persist(new Member("budgetWarn", 10));
+        em.flush();
+
+        StatementBudgetGuard.begin("warn", 1, StatementBudgetGuard.Mode.WARN);
+        memberJpaRepository.findByUsername("budgetWarn");
+        memberJpaRepository.findByUsername("budgetWarn");
+
+        assertThat(StatementBudgetGuard.end()).isEqualTo(2);
+    }
+
+    @Test
+    public void failModeThrowsOnFirstStatementOverBudget() {
+        Team team = new Team("budgetTeam");
+        em.persist(team);
+        em.persist(new Member("budgetFail", 10, team));
+        em.flush();
+
+        StatementBudgetGuard.begin("fail", 1, StatementBudgetGuard.Mode.FAIL);
+        memberJpaRepository.findByUsername("budgetFail");
+        Throwable thrown = catchThrowable(() -> memberJpaRepository.findByUsername("budgetFail"));
+
+        assertThat(thrown).isNotNull();
+        assertThat(NestedExceptionUtils.getMostSpecificCause(thrown)).isInstanceOf(StatementBudgetExceededException.class);
+    }
+
+    @Test
+    public void exemptStatementsAreNotCounted() {
+        em.persist(new Member("budgetExempt", 10));
+        em.flush();
+
+        StatementBudgetGuard.begin("exempt", 1, StatementBudgetGuard.Mode.FAIL);
+        StatementBudgetGuard.exempt(() -> {
+            memberJpaRepository.findByUsername("budgetExempt");
+            return memberJpaRepository.findByUsername("budgetExempt");
+        });
+        memberJpaRepository.findByUsername("budgetExempt");
+
+        assertThat(StatementBudgetGuard.end()).isEqualTo(1);
+    }
+}